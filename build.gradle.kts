@@ -2,6 +2,8 @@ plugins {
     java
     id("org.springframework.boot") version "3.2.0"
     id("io.spring.dependency-management") version "1.1.4"
+    id("me.champeau.jmh") version "0.7.2"
+    id("org.hibernate.orm") version "6.3.1.Final"
 }
 
 group = "com.recreation"
@@ -18,9 +20,13 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-security")
     implementation("org.springframework.boot:spring-boot-starter-validation")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
 
-    // PostgreSQL Driver
-    runtimeOnly("org.postgresql:postgresql")
+    // Метрики в формате Prometheus: /actuator/prometheus на порту management (8081)
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+
+    // PostgreSQL Driver (PGConnection нужен для LISTEN/NOTIFY в CacheInvalidationBus)
+    implementation("org.postgresql:postgresql")
 
     // Flyway for Database Migration
     implementation("org.flywaydb:flyway-core")
@@ -35,6 +41,9 @@ dependencies {
     // SpringDoc OpenAPI (Swagger)
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
 
+    // Apache POI: потоковая запись XLSX для экспорта маршрутов
+    implementation("org.apache.poi:poi-ooxml:5.2.5")
+
     // JWT (JSON Web Token)
     implementation("io.jsonwebtoken:jjwt-api:0.12.3")
     runtimeOnly("io.jsonwebtoken:jjwt-impl:0.12.3")
@@ -45,10 +54,31 @@ dependencies {
     testImplementation("org.springframework.security:spring-security-test")
 }
 
+// Bytecode enhancement: @Basic(fetch = LAZY) у JSONB-массивов Route действительно загружается лениво
+hibernate {
+    enhancement {
+        enableLazyInitialization.set(true)
+    }
+}
+
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// Бенчмарки: ./gradlew jmh (фильтр: -PjmhIncludes=RouteCalculation)
+jmh {
+    jmhVersion.set("1.37")
+    includes.set(listOf(project.findProperty("jmhIncludes")?.toString() ?: ".*"))
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
 tasks.jar {
     enabled = false
 }
@@ -0,0 +1,140 @@
+// Нагрузочный тест для сравнения режимов потоков (k6, https://k6.io).
+//
+// 1. Платформенные потоки:   docker compose up --build
+//    k6 run -e MODE=platform load-test/routes.js
+// 2. Виртуальные потоки:     JDK_VERSION=21 SPRING_PROFILES_ACTIVE=virtual-threads docker compose up --build
+//    k6 run -e MODE=virtual load-test/routes.js
+//
+// Итог пишется в load-test/results/<MODE>.json: http_reqs (rate — пропускная способность)
+// и http_req_duration (p(99)) по каждому сценарию и по каждому endpoint (list, detail, create, delete, login).
+// Для сравнения до/после изменения маппинга запускать с разными MODE на одной и той же машине.
+// BASE_URL по умолчанию http://localhost:8080/api.
+// Сценарий login упирается в ограничение попыток входа: для замера BCrypt поднимите лимиты,
+// например APP_SECURITY_LOGINLIMIT_EMAIL_CAPACITY=100000 APP_SECURITY_LOGINLIMIT_EMAIL_REFILLPERMINUTE=100000
+// (и то же для IP).
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api';
+const MODE = __ENV.MODE || 'platform';
+const VUS = Number(__ENV.VUS || 200);
+const DURATION = __ENV.DURATION || '2m';
+
+export const options = {
+    scenarios: {
+        // Чтение: JPA-запросы в RouteService
+        read_routes: { executor: 'constant-vus', vus: VUS, duration: DURATION, exec: 'readRoutes' },
+        // Запись: insert маршрута и расчёта
+        create_route: { executor: 'constant-vus', vus: Math.max(1, Math.floor(VUS / 10)), duration: DURATION, exec: 'createRoute' },
+        // Создание и удаление: delete проверяет владельца без загрузки маршрута
+        delete_route: { executor: 'constant-vus', vus: Math.max(1, Math.floor(VUS / 10)), duration: DURATION, exec: 'deleteRoute' },
+        // BCrypt в AuthService
+        login: { executor: 'constant-vus', vus: Math.max(1, Math.floor(VUS / 20)), duration: DURATION, exec: 'login' },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    // Пороги только для того, чтобы k6 выделил под-метрики по тегам в итоге
+    thresholds: {},
+};
+
+const ENDPOINTS = ['list', 'detail', 'create', 'delete', 'login'];
+for (const scenario of Object.keys(options.scenarios)) {
+    options.thresholds[`http_req_duration{scenario:${scenario}}`] = ['p(99)>=0'];
+    options.thresholds[`http_reqs{scenario:${scenario}}`] = ['count>=0'];
+}
+for (const endpoint of ENDPOINTS) {
+    options.thresholds[`http_req_duration{endpoint:${endpoint}}`] = ['p(99)>=0'];
+    options.thresholds[`http_reqs{endpoint:${endpoint}}`] = ['count>=0'];
+}
+
+const JSON_HEADERS = { 'Content-Type': 'application/json' };
+
+const route = {
+    routeName: 'load-test',
+    routeType: 'однодневный',
+    routeTimeType: 'fixed_time',
+    tSut: 8.0,
+    tSezon: 120,
+    gs: 12,
+    tl: 1,
+    tdArray: [1.5, 2.0, 1.25],
+    dtArray: [3.0, 4.0, 2.5],
+    dgArray: [0.5, 0.5, 0.5],
+    vArray: [2.0, 2.0, 2.0],
+    ecologicalFactors: [1, 2],
+    managementFactors: [1],
+};
+
+export function setup() {
+    const email = `load-${Date.now()}@example.com`;
+    const password = 'load-test-password';
+    http.post(`${BASE_URL}/api/v1/auth/register`, JSON.stringify({ email, password, confirmPassword: password }), { headers: JSON_HEADERS });
+
+    const login = http.post(`${BASE_URL}/api/v1/auth/login`, JSON.stringify({ email, password }), { headers: JSON_HEADERS });
+    const token = login.json('access_token');
+    const auth = { headers: Object.assign({ Authorization: `Bearer ${token}` }, JSON_HEADERS) };
+
+    const created = http.post(`${BASE_URL}/api/v1/routes`, JSON.stringify(route), auth);
+    return { email, password, token, routeId: created.json('id') };
+}
+
+function auth(data, endpoint) {
+    return {
+        headers: Object.assign({ Authorization: `Bearer ${data.token}` }, JSON_HEADERS),
+        tags: { endpoint },
+    };
+}
+
+export function readRoutes(data) {
+    const list = http.get(`${BASE_URL}/api/v1/routes?limit=20`, auth(data, 'list'));
+    check(list, { 'list 200': (r) => r.status === 200 });
+
+    const detail = http.get(`${BASE_URL}/api/v1/routes/${data.routeId}`, auth(data, 'detail'));
+    check(detail, { 'detail 200': (r) => r.status === 200 });
+}
+
+export function createRoute(data) {
+    const res = http.post(`${BASE_URL}/api/v1/routes`, JSON.stringify(route), auth(data, 'create'));
+    check(res, { 'create 201': (r) => r.status === 201 });
+}
+
+export function deleteRoute(data) {
+    const created = http.post(`${BASE_URL}/api/v1/routes`, JSON.stringify(route), auth(data, 'create'));
+    if (created.status !== 201) {
+        return;
+    }
+    const res = http.del(`${BASE_URL}/api/v1/routes/${created.json('id')}`, null, auth(data, 'delete'));
+    check(res, { 'delete 204': (r) => r.status === 204 });
+}
+
+export function login(data) {
+    const res = http.post(`${BASE_URL}/api/v1/auth/login`,
+        JSON.stringify({ email: data.email, password: data.password }), { headers: JSON_HEADERS, tags: { endpoint: 'login' } });
+    check(res, { 'login 200': (r) => r.status === 200 });
+}
+
+export function handleSummary(data) {
+    const pick = (name) => {
+        const metric = data.metrics[name];
+        return metric ? metric.values : null;
+    };
+
+    const result = { mode: MODE, vus: VUS, duration: DURATION, scenarios: {}, endpoints: {} };
+    for (const scenario of Object.keys(options.scenarios)) {
+        result.scenarios[scenario] = {
+            http_reqs: pick(`http_reqs{scenario:${scenario}}`),
+            http_req_duration: pick(`http_req_duration{scenario:${scenario}}`),
+        };
+    }
+    for (const endpoint of ENDPOINTS) {
+        result.endpoints[endpoint] = {
+            http_reqs: pick(`http_reqs{endpoint:${endpoint}}`),
+            http_req_duration: pick(`http_req_duration{endpoint:${endpoint}}`),
+        };
+    }
+
+    return {
+        [`load-test/results/${MODE}.json`]: JSON.stringify(result, null, 2),
+        stdout: JSON.stringify(result, null, 2) + '\n',
+    };
+}
@@ -0,0 +1,126 @@
+package com.recreation.calculator.benchmark;
+
+import com.recreation.calculator.domain.Recommendation;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.User;
+import com.recreation.calculator.repository.RecommendationRepository;
+import com.recreation.calculator.service.RecommendationService;
+import com.recreation.calculator.service.RouteCalculationService;
+import com.recreation.calculator.service.RouteDetailCache;
+import com.recreation.calculator.service.RouteService;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Детерминированные тестовые данные для бенчмарков.
+ */
+public final class BenchmarkFixtures {
+
+    private static final long SEED = 42L;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Route route(String routeTimeType, int segments) {
+        Random random = new Random(SEED);
+
+        Route route = Route.builder()
+                .id(1L)
+                .user(User.builder().id(1L).email("bench@example.com").login("bench@example.com").build())
+                .routeName("Benchmark route")
+                .routeType("однодневный")
+                .routeTimeType(routeTimeType)
+                .tSut(new BigDecimal("10.0"))
+                .tSezon(180)
+                .gs(12)
+                .tl(2)
+                .tdArray(decimals(random, segments, 10, 300))
+                .dtArray(decimals(random, segments, 100, 5000))
+                .dgArray(decimals(random, segments, 50, 500))
+                .vArray(decimals(random, segments, 100, 600))
+                .ecologicalFactors(List.of(1, 2))
+                .managementFactors(List.of(1))
+                .createdAt(LocalDateTime.of(2024, 6, 1, 12, 0))
+                .updatedAt(LocalDateTime.of(2024, 6, 1, 12, 0))
+                .build();
+
+        route.setCalculation(RouteCalculation.builder()
+                .id(1L)
+                .route(route)
+                .cfn(new BigDecimal("1.00"))
+                .mCoefficient(new BigDecimal("1.00"))
+                .bcc(48)
+                .pcc(48)
+                .rcc(48)
+                .maxGroups(4)
+                .createdAt(LocalDateTime.of(2024, 6, 1, 12, 0))
+                .build());
+
+        return route;
+    }
+
+    /**
+     * RouteService для маппинга маршрутов: используется только справочник рекомендаций,
+     * репозитории, очередь расчётов и метрики не нужны.
+     */
+    public static RouteService routeService(RecommendationService recommendationService,
+                                            RouteDetailCache routeDetailCache) {
+        return new RouteService(null, null, new RouteCalculationService(null), recommendationService,
+                routeDetailCache, null, null, null, null, null);
+    }
+
+    /**
+     * Справочник рекомендаций без БД. Снимок загружается один раз и не меняется,
+     * поэтому шина межузловой инвалидации не используется.
+     */
+    public static RecommendationService recommendationService() {
+        return new RecommendationService(recommendationRepository(), event -> { }, null);
+    }
+
+    /**
+     * Репозиторий рекомендаций без БД: возвращает фиксированный справочник.
+     */
+    public static RecommendationRepository recommendationRepository() {
+        List<Recommendation> catalog = List.of(
+                recommendation(1L, "ecological", 1),
+                recommendation(2L, "ecological", 2),
+                recommendation(3L, "management", 1),
+                recommendation(4L, "management", 2));
+
+        return (RecommendationRepository) Proxy.newProxyInstance(
+                RecommendationRepository.class.getClassLoader(),
+                new Class<?>[]{RecommendationRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll", "findRecommendationsByFactors" -> catalog;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchmarkRecommendationRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Recommendation recommendation(Long id, String factorType, int factorNumber) {
+        return Recommendation.builder()
+                .id(id)
+                .factorType(factorType)
+                .factorNumber(factorNumber)
+                .factorDescription("Описание фактора " + factorNumber)
+                .recommendationText("Рекомендация по фактору " + factorNumber)
+                .build();
+    }
+
+    // Значения со scale 2 в диапазоне [min, max) сотых
+    private static List<BigDecimal> decimals(Random random, int count, int min, int max) {
+        List<BigDecimal> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(BigDecimal.valueOf(min + random.nextInt(max - min), 2));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,57 @@
+package com.recreation.calculator.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка JWT, как её выполняет JwtAuthenticationFilter на каждом запросе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = "recreation-calculator-super-secret-key-that-is-long-enough-for-HS512";
+
+    private JwtTokenProvider jwtTokenProvider;
+    private String validToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtTokenProvider = new JwtTokenProvider();
+        setField("jwtSecret", SECRET);
+        setField("jwtExpirationMs", 86_400_000L);
+        setField("cacheMaxSize", 10_000);
+        jwtTokenProvider.init();
+
+        validToken = jwtTokenProvider.generateToken("bench@example.com", 1L);
+        tamperedToken = validToken.substring(0, validToken.length() - 2) + "xx";
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenProvider.validateToken(validToken);
+    }
+
+    // Невалидные токены не кэшируются: полный разбор и проверка HMAC
+    @Benchmark
+    public boolean validateTamperedToken() {
+        return jwtTokenProvider.validateToken(tamperedToken);
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(JwtTokenProvider.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, jwtTokenProvider, value);
+    }
+}
@@ -0,0 +1,44 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.benchmark.BenchmarkFixtures;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Логика RouteCalculationService.saveCalculation без обращения к БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RouteCalculationBenchmark {
+
+    @Param({"fixed_time", "unlimited_time"})
+    public String routeTimeType;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int segments;
+
+    private RouteCalculationService calculationService;
+    private Route route;
+
+    @Setup
+    public void setUp() {
+        calculationService = new RouteCalculationService(null);
+        route = BenchmarkFixtures.route(routeTimeType, segments);
+    }
+
+    @Benchmark
+    public RouteCalculation calculate() {
+        return calculationService.calculate(route);
+    }
+}
@@ -0,0 +1,64 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.benchmark.BenchmarkFixtures;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.dto.response.RouteDetailResponse;
+import com.recreation.calculator.dto.response.RouteListResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг маршрута в DTO и сериализация RouteDetailResponse в JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RouteMappingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int segments;
+
+    private RouteService routeService;
+    private ObjectMapper objectMapper;
+    private Route route;
+    private RouteDetailResponse detailResponse;
+
+    @Setup
+    public void setUp() {
+        RecommendationService recommendationService = BenchmarkFixtures.recommendationService();
+
+        // Та же конфигурация, что у ObjectMapper в Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        routeService = BenchmarkFixtures.routeService(recommendationService,
+                new RouteDetailCache(objectMapper, 64L << 20, 4L << 20));
+
+        route = BenchmarkFixtures.route("fixed_time", segments);
+        detailResponse = routeService.mapToDetailResponse(route);
+    }
+
+    @Benchmark
+    public RouteDetailResponse mapToDetailResponse() {
+        return routeService.mapToDetailResponse(route);
+    }
+
+    @Benchmark
+    public RouteListResponse mapToListResponse() {
+        return routeService.mapToListResponse(route);
+    }
+
+    @Benchmark
+    public byte[] serializeDetailResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(detailResponse);
+    }
+}
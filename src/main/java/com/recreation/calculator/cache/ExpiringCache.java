@@ -0,0 +1,82 @@
+package com.recreation.calculator.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Ограниченный по размеру кэш, в котором у каждой записи свой срок жизни.
+ * Чтение без блокировок; просроченные записи удаляются при чтении и при переполнении.
+ */
+public class ExpiringCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public ExpiringCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize должен быть больше 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, V value, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        if (expiresAtMillis <= now) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(key, new Entry<>(value, expiresAtMillis));
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Удаляет записи, значение которых подходит под условие. Перебирает весь кэш.
+     */
+    public void invalidateIf(Predicate<? super V> predicate) {
+        entries.values().removeIf(entry -> predicate.test(entry.value()));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Сначала удаляем просроченные, затем, если места всё ещё мало, произвольные записи
+    // до 90% ёмкости, чтобы не сканировать кэш на каждой вставке
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+
+        int excess = entries.size() - maxSize * 9 / 10;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            excess--;
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.recreation.calculator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Семафор перед пулом соединений, включается в профиле virtual-threads
+ * (app.datasource.gate.enabled=true). Вместе с репликой ограничивает соединения обоих пулов сразу.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.gate.enabled", havingValue = "true")
+@Slf4j
+public class DataSourceGateConfig {
+
+    @Bean
+    static BeanPostProcessor connectionGatePostProcessor(Environment environment) {
+        int permits = environment.getProperty("app.datasource.gate.permits", Integer.class,
+                environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        long acquireTimeoutMs = environment.getProperty("app.datasource.gate.acquire-timeout-ms", Long.class, 30000L);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Только основной DataSource: при включённой реплике пулы primary/replica за ним не оборачиваются
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)
+                        && !(bean instanceof ConnectionGateDataSource)) {
+                    log.info("Gating DataSource '{}' with {} permits", beanName, permits);
+                    return new ConnectionGateDataSource(dataSource, permits, acquireTimeoutMs);
+                }
+                return bean;
+            }
+        };
+    }
+}
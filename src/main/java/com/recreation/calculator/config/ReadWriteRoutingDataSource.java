@@ -0,0 +1,44 @@
+package com.recreation.calculator.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Транзакции readOnly идут в реплику, остальное — в основную БД.
+ * Read-your-writes: после коммита пишущей транзакции клиент ещё read-your-writes-ms читает из основной БД,
+ * чтобы не увидеть на отстающей реплике состояние до своей записи (например, GET сразу после создания маршрута).
+ * Отметка о записи хранится у клиента (ReadYourWritesFilter), поэтому работает и через другие узлы.
+ * Работает только за LazyConnectionDataSourceProxy: соединение должно браться после установки флага readOnly.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteAfterCommit();
+            return PRIMARY;
+        }
+
+        return ReadYourWritesFilter.readsFromPrimary() ? PRIMARY : REPLICA;
+    }
+
+    private static void recordWriteAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ReadYourWritesFilter.recordWrite();
+            }
+        });
+    }
+}
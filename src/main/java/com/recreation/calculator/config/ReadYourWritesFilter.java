@@ -0,0 +1,115 @@
+package com.recreation.calculator.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes при чтении с реплики, не привязанный к узлу: после коммита пишущей транзакции клиент
+ * получает cookie со временем записи. Пока запись моложе read-your-writes-ms, read-only транзакции его запросов
+ * идут в основную БД, на какой бы узел за балансировщиком они ни попали.
+ * Время берётся по часам узлов приложения; при синхронизации NTP расхождение много меньше окна.
+ * Стоит раньше Spring Security, чтобы охватить и чтения при аутентификации.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "rw_last_write";
+
+    private static final ThreadLocal<RequestState> CURRENT = new ThreadLocal<>();
+
+    private final long windowMs;
+
+    ReadYourWritesFilter(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        CURRENT.set(new RequestState(request, response, windowMs, wroteRecently(request)));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Читать ли текущему запросу из основной БД: клиент недавно писал, в том числе на другом узле.
+     */
+    static boolean readsFromPrimary() {
+        RequestState state = CURRENT.get();
+        return state != null && state.primaryReads;
+    }
+
+    /**
+     * Отмечает запись после коммита: остаток запроса читает из основной БД, клиент получает cookie.
+     */
+    static void recordWrite() {
+        RequestState state = CURRENT.get();
+        if (state == null || state.windowMs <= 0) {
+            return;
+        }
+        state.primaryReads = true;
+        if (state.cookieSet || state.response.isCommitted()) {
+            return;
+        }
+
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, String.valueOf(System.currentTimeMillis()))
+                .path("/")
+                .maxAge(Duration.ofMillis(state.windowMs))
+                .httpOnly(true)
+                .secure(state.request.isSecure())
+                .sameSite("Lax")
+                .build();
+        state.response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        state.cookieSet = true;
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (windowMs <= 0 || cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    long age = System.currentTimeMillis() - Long.parseLong(cookie.getValue());
+                    // Часы другого узла могут немного спешить
+                    return Math.abs(age) < windowMs;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class RequestState {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long windowMs;
+        private boolean primaryReads;
+        private boolean cookieSet;
+
+        RequestState(HttpServletRequest request, HttpServletResponse response, long windowMs, boolean primaryReads) {
+            this.request = request;
+            this.response = response;
+            this.windowMs = windowMs;
+            this.primaryReads = primaryReads;
+        }
+    }
+}
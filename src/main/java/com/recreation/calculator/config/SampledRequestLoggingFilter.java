@@ -0,0 +1,60 @@
+package com.recreation.calculator.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Журнал запросов с выборкой: пишется доля app.logging.requests.sample-rate запросов,
+ * а также все ответы 5xx и запросы медленнее slow-threshold-ms.
+ * Решение о выборке принимается до запроса, поэтому невыбранные запросы почти ничего не стоят.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SampledRequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final Logger requestLog = LoggerFactory.getLogger("request");
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    public SampledRequestLoggingFilter(@Value("${app.logging.requests.sample-rate:0.01}") double sampleRate,
+                                       @Value("${app.logging.requests.slow-threshold-ms:1000}") long slowThresholdMs) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdMs * 1_000_000;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (!requestLog.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        long started = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            int status = response.getStatus();
+            if (sampled || status >= 500 || elapsed >= slowThresholdNanos) {
+                requestLog.info("{} {} -> {} in {} ms", request.getMethod(), request.getRequestURI(), status,
+                        elapsed / 1_000_000);
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.recreation.calculator.config;
 
+import com.recreation.calculator.security.BoundedPasswordEncoder;
 import com.recreation.calculator.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,6 +16,8 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfigurationSource;
 
 @Configuration
@@ -19,21 +25,36 @@ import org.springframework.web.cors.CorsConfigurationSource;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private static final RequestMatcher PROMETHEUS = new AntPathRequestMatcher("/actuator/prometheus", "GET");
+
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final CorsConfigurationSource corsConfigurationSource;
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${app.security.password.strength:10}") int strength,
+            @Value("${app.security.password.threads:0}") int threads,
+            @Value("${app.security.password.queue-capacity:64}") int queueCapacity,
+            @Value("${app.security.password.retry-after-seconds:1}") long retryAfterSeconds) {
+        // BCrypt — чистый CPU, поэтому по умолчанию потоков не больше, чем ядер
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity,
+                retryAfterSeconds, meterRegistry);
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            @Value("${management.server.port:-1}") int managementPort) throws Exception {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource))
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Повторная диспетчеризация потоковых ответов: запрос уже авторизован
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Публичные endpoint'ы для авторизации
                         .requestMatchers(HttpMethod.POST, "/api/v1/auth/login").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/v1/auth/register").permitAll()
@@ -48,6 +69,13 @@ public class SecurityConfig {
                                 "/v3/api-docs.yaml"
                         ).permitAll()
 
+                        // Health-check
+                        .requestMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
+
+                        // Метрики для Prometheus — без токена только на внутреннем порту management
+                        .requestMatchers(request -> request.getLocalPort() == managementPort
+                                && PROMETHEUS.matches(request)).permitAll()
+
                         // Публичные endpoint'ы
                         .requestMatchers(HttpMethod.GET, "/api/v1/routes/recommendations").permitAll()
 
@@ -3,6 +3,8 @@ package com.recreation.calculator.controller;
 import com.recreation.calculator.dto.request.LoginRequest;
 import com.recreation.calculator.dto.request.RegisterRequest;
 import com.recreation.calculator.dto.response.AuthResponse;
+import com.recreation.calculator.exception.ResourceNotFoundException;
+import com.recreation.calculator.security.LoginRateLimiter;
 import com.recreation.calculator.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,6 +12,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
 
     @PostMapping("/login")
     @Operation(
@@ -38,11 +42,27 @@ public class AuthController {
                     content = @Content(schema = @Schema(implementation = AuthResponse.class))
             ),
             @ApiResponse(responseCode = "401", description = "Неверные учётные данные"),
+            @ApiResponse(responseCode = "429", description = "Слишком много попыток входа"),
             @ApiResponse(responseCode = "400", description = "Неверный формат запроса")
     })
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        log.info("Login attempt for user: {}", request.getEmail());
-        AuthResponse response = authService.login(request.getEmail(), request.getPassword());
+    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request,
+                                              HttpServletRequest httpRequest) {
+        log.debug("Login attempt for user: {}", request.getEmail());
+        // Адрес клиента за балансировщиком: X-Forwarded-For разбирается по server.forward-headers-strategy
+        String clientIp = httpRequest.getRemoteAddr();
+
+        // Лимит проверяется до BCrypt
+        loginRateLimiter.checkLogin(request.getEmail(), clientIp);
+
+        AuthResponse response;
+        try {
+            response = authService.login(request.getEmail(), request.getPassword());
+        } catch (ResourceNotFoundException e) {
+            loginRateLimiter.recordFailure(request.getEmail(), clientIp);
+            throw e;
+        }
+
+        loginRateLimiter.recordSuccess(request.getEmail(), clientIp);
         return ResponseEntity.ok(response);
     }
 
@@ -58,10 +78,13 @@ public class AuthController {
                     content = @Content(schema = @Schema(implementation = AuthResponse.class))
             ),
             @ApiResponse(responseCode = "400", description = "Неверный формат запроса или ошибка валидации"),
-            @ApiResponse(responseCode = "409", description = "Пользователь уже существует")
+            @ApiResponse(responseCode = "409", description = "Пользователь уже существует"),
+            @ApiResponse(responseCode = "429", description = "Слишком много попыток регистрации")
     })
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
-        log.info("Registration attempt for email: {}", request.getEmail());
+    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request,
+                                                 HttpServletRequest httpRequest) {
+        log.debug("Registration attempt for email: {}", request.getEmail());
+        loginRateLimiter.checkRegister(httpRequest.getRemoteAddr());
         AuthResponse response = authService.register(
                 request.getEmail(),
                 request.getPassword(),
@@ -1,11 +1,31 @@
 package com.recreation.calculator.controller;
 
 import com.recreation.calculator.dto.request.RouteCreateRequest;
+import com.recreation.calculator.dto.request.RouteSimulationRequest;
+import com.recreation.calculator.dto.request.RouteSweepRequest;
+import com.recreation.calculator.dto.response.RecalculationJobResponse;
+import com.recreation.calculator.dto.response.RouteCalculationHistoryResponse;
+import com.recreation.calculator.dto.response.RouteCalculationStatusResponse;
 import com.recreation.calculator.dto.response.RouteDetailResponse;
+import com.recreation.calculator.dto.response.RouteImportResponse;
+import com.recreation.calculator.dto.response.RouteListPage;
 import com.recreation.calculator.dto.response.RouteListResponse;
+import com.recreation.calculator.dto.response.RouteSimulationResponse;
+import com.recreation.calculator.dto.response.RouteStatisticsResponse;
 import com.recreation.calculator.dto.response.RecommendationResponse;
+import com.recreation.calculator.security.AdminAccess;
+import com.recreation.calculator.security.AuthenticatedUser;
+import com.recreation.calculator.service.CachedRouteDetail;
 import com.recreation.calculator.service.RecommendationService;
+import com.recreation.calculator.service.RouteDetailCache;
+import com.recreation.calculator.service.RouteExportService;
+import com.recreation.calculator.service.RouteImportService;
+import com.recreation.calculator.service.RouteRecalculationService;
 import com.recreation.calculator.service.RouteService;
+import com.recreation.calculator.service.RouteSimulationService;
+import com.recreation.calculator.service.RouteStatisticsService;
+import com.recreation.calculator.service.RouteSweepService;
+import com.recreation.calculator.service.UserIdentityService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,15 +34,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -33,8 +60,20 @@ import java.util.List;
 @SecurityRequirement(name = "bearerAuth")
 public class RouteController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON = "application/x-ndjson";
+
     private final RouteService routeService;
     private final RecommendationService recommendationService;
+    private final RouteImportService routeImportService;
+    private final AdminAccess adminAccess;
+    private final RouteDetailCache routeDetailCache;
+    private final UserIdentityService userIdentityService;
+    private final RouteSimulationService routeSimulationService;
+    private final RouteSweepService routeSweepService;
+    private final RouteRecalculationService routeRecalculationService;
+    private final RouteExportService routeExportService;
+    private final RouteStatisticsService routeStatisticsService;
 
     // ← НОВЫЙ МЕТОД для получения username из Security контекста
     private String getCurrentUsername() {
@@ -45,6 +84,16 @@ public class RouteController {
         throw new RuntimeException("Пользователь не авторизован");
     }
 
+    // id пользователя из claim uid токена; для старых токенов — по email через кэш
+    private Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                && user.getUserId() != null) {
+            return user.getUserId();
+        }
+        return userIdentityService.resolveUserId(getCurrentUsername());
+    }
+
     @PostMapping
     @Operation(
             summary = "Сохранение расчёта маршрута",
@@ -62,18 +111,109 @@ public class RouteController {
     public ResponseEntity<RouteDetailResponse> createRoute(
             @Valid @RequestBody RouteCreateRequest request) {
 
-        String userEmail = getCurrentUsername();
-        log.info("POST /api/v1/routes - Creating route for user: {}", userEmail);
+        Long userId = getCurrentUserId();
+        log.debug("POST /api/v1/routes - Creating route for user: {}", userId);
 
-        RouteDetailResponse response = routeService.createRoute(request, userEmail);
+        RouteDetailResponse response = routeService.createRoute(request, userId);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Массовый импорт маршрутов",
+            description = "Сохраняет массив маршрутов пакетами и рассчитывает ёмкость каждого. " +
+                    "Ошибки возвращаются по каждому элементу, не прерывая импорт"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Импорт выполнен",
+                    content = @Content(schema = @Schema(implementation = RouteImportResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<RouteImportResponse> importRoutes(@RequestBody List<RouteCreateRequest> requests) {
+
+        Long userId = getCurrentUserId();
+        log.debug("POST /api/v1/routes/import - Importing {} routes for user: {}", requests.size(), userId);
+
+        return ResponseEntity.ok(routeImportService.importRoutes(requests, userId));
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON)
+    @Operation(
+            summary = "Потоковый импорт маршрутов (NDJSON)",
+            description = "Принимает по одному маршруту в строке и сохраняет их пакетами по мере чтения потока"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Импорт выполнен",
+                    content = @Content(schema = @Schema(implementation = RouteImportResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<RouteImportResponse> importRoutesStream(HttpServletRequest request) throws IOException {
+
+        Long userId = getCurrentUserId();
+        log.debug("POST /api/v1/routes/import - Importing NDJSON stream for user: {}", userId);
+
+        return ResponseEntity.ok(routeImportService.importRoutes(request.getInputStream(), userId));
+    }
+
+    @PostMapping("/simulate")
+    @Operation(
+            summary = "Расчёт вариантов маршрута без сохранения",
+            description = "Рассчитывает BCC, PCC и RCC для каждого варианта параметров. " +
+                    "Ничего не записывает в базу данных"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Результаты в порядке вариантов запроса",
+                    content = @Content(schema = @Schema(implementation = RouteSimulationResponse.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Неверные данные запроса"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<RouteSimulationResponse> simulateRoutes(
+            @Valid @RequestBody RouteSimulationRequest request) {
+
+        log.debug("POST /api/v1/routes/simulate - {} scenarios", request.getScenarios().size());
+
+        return ResponseEntity.ok(routeSimulationService.simulate(request.getScenarios()));
+    }
+
+    @PostMapping(value = "/sweep", produces = NDJSON)
+    @Operation(
+            summary = "Перебор сетки параметров маршрута",
+            description = "Рассчитывает ёмкость для всех сочетаний диапазонов параметров и наборов факторов. " +
+                    "Результаты отдаются потоком NDJSON по мере расчёта, последняя строка — сводка с лучшим " +
+                    "вариантом для каждого размера группы. Ничего не записывает в базу данных"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поток результатов"),
+            @ApiResponse(responseCode = "400", description = "Неверные данные запроса или слишком большая сетка"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<StreamingResponseBody> sweepRoutes(@Valid @RequestBody RouteSweepRequest request) {
+
+        // Сетка проверяется до начала ответа, чтобы ошибки возвращались как 400
+        RouteSweepService.Plan plan = routeSweepService.plan(request);
+        log.debug("POST /api/v1/routes/sweep - {} points", plan.size());
+
+        StreamingResponseBody body = out -> routeSweepService.stream(plan, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
     @GetMapping
     @Operation(
             summary = "Получение списка расчётов текущего пользователя",
-            description = "Возвращает список всех сохранённых расчётов, созданных авторизованным пользователем"
+            description = "Возвращает страницу сохранённых расчётов авторизованного пользователя, новые первыми. " +
+                    "Курсор следующей страницы передаётся в заголовке X-Next-Cursor"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -81,22 +221,90 @@ public class RouteController {
                     description = "Список маршрутов успешно получен",
                     content = @Content(schema = @Schema(implementation = RouteListResponse.class))
             ),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
             @ApiResponse(responseCode = "401", description = "Не авторизован")
     })
-    public ResponseEntity<List<RouteListResponse>> getUserRoutes() {
+    public ResponseEntity<List<RouteListResponse>> getUserRoutes(
+            @Parameter(description = "Курсор из заголовка X-Next-Cursor предыдущей страницы")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы (по умолчанию 50, не более 200)")
+            @RequestParam(required = false) Integer limit) {
 
-        String userEmail = getCurrentUsername();
-        log.info("GET /api/v1/routes - Fetching routes for user: {}", userEmail);
+        Long userId = getCurrentUserId();
+        log.debug("GET /api/v1/routes - Fetching routes for user: {}", userId);
+
+        RouteListPage page = routeService.getUserRoutes(userId, cursor, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/statistics")
+    @Operation(
+            summary = "Сводная статистика по маршрутам пользователя",
+            description = "Итог и группы по типу маршрута и типу времени: число маршрутов и расчётов, суммы BCC/PCC/RCC, " +
+                    "средние CFN, M и max_groups, медиана и 90-й перцентиль RCC, а также гистограмма CFN с шагом 0.1. " +
+                    "Все агрегаты вычисляются в базе данных"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Статистика успешно получена",
+                    content = @Content(schema = @Schema(implementation = RouteStatisticsResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<RouteStatisticsResponse> getRouteStatistics() {
+        Long userId = getCurrentUserId();
+        log.debug("GET /api/v1/routes/statistics - user: {}", userId);
+
+        return ResponseEntity.ok(routeStatisticsService.getStatistics(userId));
+    }
+
+    @GetMapping("/export")
+    @Operation(
+            summary = "Экспорт маршрутов пользователя в CSV или XLSX",
+            description = "Выгружает все маршруты текущего пользователя с результатами расчёта, новые первыми. " +
+                    "Строки передаются потоком по мере чтения из базы данных. " +
+                    "С gzip=true ответ сжимается (Content-Encoding: gzip)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Файл экспорта"),
+            @ApiResponse(responseCode = "400", description = "Неизвестный формат"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован")
+    })
+    public ResponseEntity<StreamingResponseBody> exportRoutes(
+            @Parameter(description = "Формат файла: csv или xlsx") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Сжать ответ gzip") @RequestParam(defaultValue = "false") boolean gzip) {
+
+        // Пользователь и формат определяются до начала потока: тело пишется в другом потоке
+        Long userId = getCurrentUserId();
+        RouteExportService.Format exportFormat = routeExportService.parseFormat(format);
+        log.debug("GET /api/v1/routes/export - user: {}, format: {}, gzip: {}", userId, exportFormat, gzip);
 
-        List<RouteListResponse> routes = routeService.getUserRoutes(userEmail);
+        StreamingResponseBody body = out -> routeExportService.export(userId, exportFormat, gzip, out);
 
-        return ResponseEntity.ok(routes);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportFormat.fileName())
+                        .build()
+                        .toString())
+                .cacheControl(CacheControl.noStore());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     @GetMapping("/{routeId}")
     @Operation(
             summary = "Получение детальной информации о расчёте",
-            description = "Возвращает полные данные конкретного расчёта пользователя по его идентификатору"
+            description = "Возвращает полные данные конкретного расчёта пользователя по его идентификатору. " +
+                    "Поддерживает ETag/If-None-Match: если маршрут не изменился, возвращается 304"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -104,19 +312,80 @@ public class RouteController {
                     description = "Детали маршрута успешно получены",
                     content = @Content(schema = @Schema(implementation = RouteDetailResponse.class))
             ),
+            @ApiResponse(responseCode = "304", description = "Маршрут не изменился"),
             @ApiResponse(responseCode = "401", description = "Не авторизован"),
             @ApiResponse(responseCode = "403", description = "Доступ запрещён"),
             @ApiResponse(responseCode = "404", description = "Маршрут не найден")
     })
-    public ResponseEntity<RouteDetailResponse> getRouteById(
-            @Parameter(description = "ID маршрута", required = true) @PathVariable Long routeId) {
+    public ResponseEntity<byte[]> getRouteById(
+            @Parameter(description = "ID маршрута", required = true) @PathVariable Long routeId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-        String userEmail = getCurrentUsername();
-        log.info("GET /api/v1/routes/{} - Fetching route details for user: {}", routeId, userEmail);
+        Long userId = getCurrentUserId();
+        log.debug("GET /api/v1/routes/{} - Fetching route details for user: {}", routeId, userId);
+
+        // Кэш проверяется до транзакции: при попадании в БД не ходим
+        CachedRouteDetail detail = routeDetailCache.getOrLoad(routeId, userId,
+                () -> routeService.getRouteById(routeId, userId));
+
+        if (detail.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(detail.etag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(detail.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(detail.body());
+    }
+
+    @GetMapping("/{routeId}/calculation")
+    @Operation(
+            summary = "Статус расчёта маршрута",
+            description = "Возвращает статус расчёта (pending, done, failed) и результат, если он готов. " +
+                    "С параметром waitMs ждёт завершения расчёта не дольше указанного времени"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Статус расчёта получен",
+                    content = @Content(schema = @Schema(implementation = RouteCalculationStatusResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Маршрут не найден")
+    })
+    public ResponseEntity<RouteCalculationStatusResponse> getCalculationStatus(
+            @Parameter(description = "ID маршрута", required = true) @PathVariable Long routeId,
+            @Parameter(description = "Сколько миллисекунд ждать готовности расчёта")
+            @RequestParam(defaultValue = "0") long waitMs) {
+
+        Long userId = getCurrentUserId();
+        log.debug("GET /api/v1/routes/{}/calculation - user: {}, waitMs: {}", routeId, userId, waitMs);
+
+        return ResponseEntity.ok(routeService.getCalculationStatus(routeId, userId, waitMs));
+    }
+
+    @GetMapping("/{routeId}/calculation/history")
+    @Operation(
+            summary = "История расчётов маршрута",
+            description = "Все сохранённые версии расчёта маршрута, начиная с последней: " +
+                    "при пересчёте по новым формулам прежние результаты остаются в истории"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "История получена"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "404", description = "Маршрут не найден")
+    })
+    public ResponseEntity<List<RouteCalculationHistoryResponse>> getCalculationHistory(
+            @Parameter(description = "ID маршрута", required = true) @PathVariable Long routeId) {
 
-        RouteDetailResponse response = routeService.getRouteById(routeId, userEmail);
+        Long userId = getCurrentUserId();
+        log.debug("GET /api/v1/routes/{}/calculation/history - user: {}", routeId, userId);
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(routeService.getCalculationHistory(routeId, userId));
     }
 
     @GetMapping("/recommendations")
@@ -132,13 +401,88 @@ public class RouteController {
             )
     })
     public ResponseEntity<List<RecommendationResponse>> getAllRecommendations() {
-        log.info("GET /api/v1/routes/recommendations - Fetching all recommendations");
+        log.debug("GET /api/v1/routes/recommendations - Fetching all recommendations");
 
         List<RecommendationResponse> recommendations = recommendationService.getAllRecommendations();
 
         return ResponseEntity.ok(recommendations);
     }
 
+    @PostMapping("/recommendations/reload")
+    @Operation(
+            summary = "Перезагрузка справочника рекомендаций",
+            description = "Перечитывает справочник рекомендаций из базы данных. Доступно только администраторам"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Справочник перезагружен, в ответе число рекомендаций"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "403", description = "Нет прав")
+    })
+    public ResponseEntity<Integer> reloadRecommendations() {
+        String userEmail = getCurrentUsername();
+        adminAccess.requireAdmin(userEmail);
+        log.info("POST /api/v1/routes/recommendations/reload - user: {}", userEmail);
+
+        return ResponseEntity.ok(recommendationService.reload());
+    }
+
+    @PostMapping("/recalculation")
+    @Operation(
+            summary = "Пересчитать все сохранённые расчёты (только для администраторов)",
+            description = "Запускает фоновый пересчёт после изменения формул или продолжает незавершённый " +
+                    "с контрольной точки"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Пересчёт запущен"),
+            @ApiResponse(responseCode = "409", description = "Пересчёт уже выполняется"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "403", description = "Нет прав")
+    })
+    public ResponseEntity<RecalculationJobResponse> startRecalculation() {
+        String userEmail = getCurrentUsername();
+        adminAccess.requireAdmin(userEmail);
+        log.info("POST /api/v1/routes/recalculation - user: {}", userEmail);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(routeRecalculationService.start());
+    }
+
+    @PostMapping("/recalculation/stop")
+    @Operation(summary = "Остановить пересчёт после текущей порции (только для администраторов)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Остановка запрошена"),
+            @ApiResponse(responseCode = "409", description = "Пересчёт не выполняется на этом узле"),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "403", description = "Нет прав")
+    })
+    public ResponseEntity<RecalculationJobResponse> stopRecalculation() {
+        String userEmail = getCurrentUsername();
+        adminAccess.requireAdmin(userEmail);
+        log.info("POST /api/v1/routes/recalculation/stop - user: {}", userEmail);
+
+        return ResponseEntity.ok(routeRecalculationService.stop());
+    }
+
+    @GetMapping("/recalculation")
+    @Operation(
+            summary = "Состояние пересчёта (только для администраторов)",
+            description = "Прогресс последнего задания пересчёта, скорость и оценка времени до окончания"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Состояние получено",
+                    content = @Content(schema = @Schema(implementation = RecalculationJobResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Не авторизован"),
+            @ApiResponse(responseCode = "403", description = "Нет прав"),
+            @ApiResponse(responseCode = "404", description = "Пересчёт ещё не запускался")
+    })
+    public ResponseEntity<RecalculationJobResponse> getRecalculationStatus() {
+        adminAccess.requireAdmin(getCurrentUsername());
+
+        return ResponseEntity.ok(routeRecalculationService.getStatus());
+    }
+
     @DeleteMapping("/{routeId}")
     @Operation(summary = "Удалить маршрут пользователя с расчетом")
     @ApiResponses(value = {
@@ -148,9 +492,9 @@ public class RouteController {
             @ApiResponse(responseCode = "403", description = "Нет прав")
     })
     public ResponseEntity<Void> deleteRoute(@PathVariable Long routeId) {
-        String userEmail = getCurrentUsername();
-        log.info("DELETE /api/v1/routes/{} - user: {}", routeId, userEmail);
-        routeService.deleteRoute(routeId, userEmail);
+        Long userId = getCurrentUserId();
+        log.debug("DELETE /api/v1/routes/{} - user: {}", routeId, userId);
+        routeService.deleteRoute(routeId, userId);
         return ResponseEntity.noContent().build();
     }
 }
@@ -5,6 +5,7 @@ import com.recreation.calculator.dto.request.ChangePasswordRequest;
 import com.recreation.calculator.dto.response.UserResponse;
 import com.recreation.calculator.security.JwtTokenProvider;
 import com.recreation.calculator.service.AuthService;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -45,7 +46,7 @@ public class UserController {
     })
     public ResponseEntity<UserResponse> getProfile(HttpServletRequest request) {
         String email = extractEmailFromToken(request);
-        log.info("Profile request for user: {}", email);
+        log.debug("Profile request for user: {}", email);
 
         UserResponse profile = authService.getProfile(email);
         return ResponseEntity.ok(profile);
@@ -70,7 +71,7 @@ public class UserController {
             HttpServletRequest httpRequest) {
 
         String currentEmail = extractEmailFromToken(httpRequest);
-        log.info("Email change request for user: {}", currentEmail);
+        log.debug("Email change request for user: {}", currentEmail);
 
         UserResponse updated = authService.changeEmail(currentEmail, request.getNewEmail(), request.getPassword());
         return ResponseEntity.ok(updated);
@@ -91,7 +92,7 @@ public class UserController {
             HttpServletRequest httpRequest) {
 
         String email = extractEmailFromToken(httpRequest);
-        log.info("Password change request for user: {}", email);
+        log.debug("Password change request for user: {}", email);
 
         authService.changePassword(email, request.getOldPassword(),
                 request.getNewPassword(), request.getConfirmPassword());
@@ -99,6 +100,11 @@ public class UserController {
     }
 
     private String extractEmailFromToken(HttpServletRequest request) {
+        // Claims уже проверены JwtAuthenticationFilter
+        if (request.getAttribute(JwtTokenProvider.CLAIMS_ATTRIBUTE) instanceof Claims claims) {
+            return claims.getSubject();
+        }
+
         String token = extractTokenFromRequest(request);
         if (token == null) {
             throw new IllegalArgumentException("Токен не найден");
@@ -0,0 +1,87 @@
+package com.recreation.calculator.domain;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.type.SqlTypes;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Hibernate-тип для массива участков, хранящегося в bytea в формате SegmentArrayCodec.
+ */
+public class PackedDecimalArrayType implements UserType<List<BigDecimal>> {
+
+    @Override
+    public int getSqlType() {
+        return SqlTypes.VARBINARY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<List<BigDecimal>> returnedClass() {
+        return (Class<List<BigDecimal>>) (Class<?>) List.class;
+    }
+
+    @Override
+    public boolean equals(List<BigDecimal> x, List<BigDecimal> y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(List<BigDecimal> x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public List<BigDecimal> nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session,
+                                        Object owner) throws SQLException {
+        byte[] bytes = rs.getBytes(position);
+        return bytes == null ? null : SegmentArrayCodec.decode(bytes);
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, List<BigDecimal> value, int index,
+                            SharedSessionContractImplementor session) throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.VARBINARY);
+            return;
+        }
+        st.setBytes(index, pack(value));
+    }
+
+    @Override
+    public List<BigDecimal> deepCopy(List<BigDecimal> value) {
+        return value == null ? null : new ArrayList<>(value);
+    }
+
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+
+    @Override
+    public Serializable disassemble(List<BigDecimal> value) {
+        return value == null ? null : pack(value);
+    }
+
+    @Override
+    public List<BigDecimal> assemble(Serializable cached, Object owner) {
+        return cached == null ? null : SegmentArrayCodec.decode((byte[]) cached);
+    }
+
+    private static byte[] pack(List<BigDecimal> value) {
+        byte[] bytes = SegmentArrayCodec.encode(value);
+        if (bytes == null) {
+            throw new IllegalArgumentException("Массив участков не помещается в упакованный формат");
+        }
+        return bytes;
+    }
+}
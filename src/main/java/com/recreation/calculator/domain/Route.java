@@ -7,6 +7,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.LazyGroup;
 import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -16,12 +17,20 @@ import java.util.List;
 
 @Entity
 @Table(name = "routes")
+@EntityListeners(SegmentStorageListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Route {
 
+    public static final String CALCULATION_PENDING = "pending";
+    public static final String CALCULATION_DONE = "done";
+    public static final String CALCULATION_FAILED = "failed";
+
+    // JSONB-массивы и факторы грузятся одним отдельным select при первом обращении к любому из них
+    private static final String PAYLOAD = "payload";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -51,29 +60,70 @@ public class Route {
 
     // Массивы данных (JSONB)
     @Type(JsonBinaryType.class)
-    @Column(columnDefinition = "jsonb", nullable = false)
+    @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     private List<BigDecimal> tdArray;
 
     @Type(JsonBinaryType.class)
-    @Column(columnDefinition = "jsonb", nullable = false)
+    @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     private List<BigDecimal> dtArray;
 
     @Type(JsonBinaryType.class)
-    @Column(columnDefinition = "jsonb", nullable = false)
+    @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     private List<BigDecimal> dgArray;
 
     @Type(JsonBinaryType.class)
-    @Column(columnDefinition = "jsonb", nullable = false)
+    @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     private List<BigDecimal> vArray;
 
+    // Те же массивы в упакованном виде (SegmentArrayCodec); заполнен один из двух столбцов
+    @Type(PackedDecimalArrayType.class)
+    @Column(name = "td_packed", columnDefinition = "bytea")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
+    private List<BigDecimal> tdPacked;
+
+    @Type(PackedDecimalArrayType.class)
+    @Column(name = "dt_packed", columnDefinition = "bytea")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
+    private List<BigDecimal> dtPacked;
+
+    @Type(PackedDecimalArrayType.class)
+    @Column(name = "dg_packed", columnDefinition = "bytea")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
+    private List<BigDecimal> dgPacked;
+
+    @Type(PackedDecimalArrayType.class)
+    @Column(name = "v_packed", columnDefinition = "bytea")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
+    private List<BigDecimal> vPacked;
+
+    // Агрегаты массивов, пересчитываются при каждой записи
+    @Embedded
+    private SegmentStatistics segmentStatistics;
+
     // Выбранные факторы
     @Type(JsonBinaryType.class)
     @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     @Builder.Default
     private List<Integer> ecologicalFactors = List.of();
 
     @Type(JsonBinaryType.class)
     @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup(PAYLOAD)
     @Builder.Default
     private List<Integer> managementFactors = List.of();
 
@@ -91,6 +141,33 @@ public class Route {
     @Column(name = "route_time_type", nullable = false)
     private String routeTimeType; // 'fixed_time' или 'unlimited_time'
 
+    @Column(name = "calculation_status", nullable = false, length = 20)
+    @Builder.Default
+    private String calculationStatus = CALCULATION_DONE; // 'pending', 'done' или 'failed'
+
+    @PrePersist
+    @PreUpdate
+    protected void updateSegmentStatistics() {
+        segmentStatistics = SegmentStatistics.of(getTdArray(), getDtArray(), getDgArray(), getVArray());
+    }
+
+    // Массивы читаются из того столбца, в котором хранятся
+    public List<BigDecimal> getTdArray() {
+        return tdPacked != null ? tdPacked : tdArray;
+    }
+
+    public List<BigDecimal> getDtArray() {
+        return dtPacked != null ? dtPacked : dtArray;
+    }
+
+    public List<BigDecimal> getDgArray() {
+        return dgPacked != null ? dgPacked : dgArray;
+    }
+
+    public List<BigDecimal> getVArray() {
+        return vPacked != null ? vPacked : vArray;
+    }
+
     // Добавить методы
     public boolean isFixedTimeRoute() {
         return "fixed_time".equals(this.routeTimeType);
@@ -45,6 +45,9 @@ public class RouteCalculation {
     @Column(name = "max_groups")
     private Integer maxGroups;  // NULL для неограниченного времени
 
+    @Column(name = "formula_version", nullable = false)
+    private Integer formulaVersion;  // RouteCalculationService.FORMULA_VERSION на момент расчёта
+
     // ===== МЕТАДАННЫЕ =====
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,113 @@
+package com.recreation.calculator.domain;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Компактный формат массива участков для bytea: заголовок из 8 байт и значения
+ * как целые little-endian с общим десятичным scale (4 байта на значение, если влезает в int, иначе 8).
+ * <pre>
+ * 0   magic 'S'
+ * 1   версия формата (1)
+ * 2   ширина значения в байтах (4 или 8)
+ * 3   scale
+ * 4-7 число элементов (int32 LE)
+ * </pre>
+ * NULL-элемент кодируется минимальным значением типа. Все значения возвращаются с общим scale,
+ * т. е. [1.5, 2] читается как [1.5, 2.0] — числа те же, расчёт не меняется.
+ */
+public final class SegmentArrayCodec {
+
+    public static final int HEADER_SIZE = 8;
+
+    private static final byte MAGIC = 'S';
+    private static final byte VERSION = 1;
+    private static final int MAX_SCALE = 18;
+
+    private SegmentArrayCodec() {
+    }
+
+    /**
+     * @return закодированный массив или null, если значения не помещаются в long с общим scale
+     */
+    public static byte[] encode(List<BigDecimal> values) {
+        if (values == null) {
+            return null;
+        }
+
+        int scale = 0;
+        for (BigDecimal value : values) {
+            if (value != null) {
+                scale = Math.max(scale, value.scale());
+            }
+        }
+        if (scale > MAX_SCALE) {
+            return null;
+        }
+
+        long[] unscaled = new long[values.size()];
+        boolean fitsInt = true;
+        for (int i = 0; i < unscaled.length; i++) {
+            BigDecimal value = values.get(i);
+            if (value == null) {
+                unscaled[i] = Long.MIN_VALUE;
+                continue;
+            }
+            try {
+                unscaled[i] = value.setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            if (unscaled[i] == Long.MIN_VALUE) {
+                return null;
+            }
+            fitsInt &= unscaled[i] > Integer.MIN_VALUE && unscaled[i] <= Integer.MAX_VALUE;
+        }
+
+        int width = fitsInt ? Integer.BYTES : Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + width * unscaled.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).put(VERSION).put((byte) width).put((byte) scale).putInt(unscaled.length);
+        for (long value : unscaled) {
+            if (fitsInt) {
+                buffer.putInt(value == Long.MIN_VALUE ? Integer.MIN_VALUE : (int) value);
+            } else {
+                buffer.putLong(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static boolean canEncode(List<BigDecimal> values) {
+        return values != null && encode(values) != null;
+    }
+
+    public static List<BigDecimal> decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER_SIZE || buffer.get() != MAGIC || buffer.get() != VERSION) {
+            throw new IllegalArgumentException("Неизвестный формат массива участков");
+        }
+
+        int width = buffer.get();
+        int scale = buffer.get();
+        int count = buffer.getInt();
+        if ((width != Integer.BYTES && width != Long.BYTES) || bytes.length != HEADER_SIZE + width * count) {
+            throw new IllegalArgumentException("Повреждённый массив участков");
+        }
+
+        List<BigDecimal> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (width == Integer.BYTES) {
+                int value = buffer.getInt();
+                values.add(value == Integer.MIN_VALUE ? null : BigDecimal.valueOf(value, scale));
+            } else {
+                long value = buffer.getLong();
+                values.add(value == Long.MIN_VALUE ? null : BigDecimal.valueOf(value, scale));
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+}
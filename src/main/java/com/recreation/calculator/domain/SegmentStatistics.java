@@ -0,0 +1,90 @@
+package com.recreation.calculator.domain;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Агрегаты массивов участков маршрута, хранятся в обычных numeric-колонках routes.
+ * segmentCount — число непустых T_d; NULL-элементы не учитываются, среднее округляется HALF_UP до 4 знаков.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Embeddable
+public class SegmentStatistics {
+
+    private static final int MEAN_SCALE = 4;
+
+    private Integer segmentCount;
+
+    private BigDecimal tdSum;
+    private BigDecimal tdMean;
+    private BigDecimal tdMin;
+    private BigDecimal tdMax;
+
+    private BigDecimal dtSum;
+    private BigDecimal dtMean;
+    private BigDecimal dtMin;
+    private BigDecimal dtMax;
+
+    private BigDecimal dgSum;
+    private BigDecimal dgMean;
+    private BigDecimal dgMin;
+    private BigDecimal dgMax;
+
+    private BigDecimal vSum;
+    private BigDecimal vMean;
+    private BigDecimal vMin;
+    private BigDecimal vMax;
+
+    public static SegmentStatistics of(List<BigDecimal> td, List<BigDecimal> dt,
+                                       List<BigDecimal> dg, List<BigDecimal> v) {
+        Aggregate tdAggregate = Aggregate.of(td);
+        Aggregate dtAggregate = Aggregate.of(dt);
+        Aggregate dgAggregate = Aggregate.of(dg);
+        Aggregate vAggregate = Aggregate.of(v);
+
+        return SegmentStatistics.builder()
+                .segmentCount(tdAggregate.count())
+                .tdSum(tdAggregate.sum()).tdMean(tdAggregate.mean()).tdMin(tdAggregate.min()).tdMax(tdAggregate.max())
+                .dtSum(dtAggregate.sum()).dtMean(dtAggregate.mean()).dtMin(dtAggregate.min()).dtMax(dtAggregate.max())
+                .dgSum(dgAggregate.sum()).dgMean(dgAggregate.mean()).dgMin(dgAggregate.min()).dgMax(dgAggregate.max())
+                .vSum(vAggregate.sum()).vMean(vAggregate.mean()).vMin(vAggregate.min()).vMax(vAggregate.max())
+                .build();
+    }
+
+    private record Aggregate(int count, BigDecimal sum, BigDecimal mean, BigDecimal min, BigDecimal max) {
+
+        static Aggregate of(List<BigDecimal> values) {
+            int count = 0;
+            BigDecimal sum = null;
+            BigDecimal min = null;
+            BigDecimal max = null;
+
+            if (values != null) {
+                for (BigDecimal value : values) {
+                    if (value == null) {
+                        continue;
+                    }
+                    count++;
+                    sum = sum == null ? value : sum.add(value);
+                    // При равенстве берётся последнее значение, как min/max по numeric в Postgres (V9):
+                    // 1.0 и 1.00 равны, но сохраняются с разным scale
+                    min = min == null || value.compareTo(min) <= 0 ? value : min;
+                    max = max == null || value.compareTo(max) >= 0 ? value : max;
+                }
+            }
+
+            BigDecimal mean = count == 0 ? null : sum.divide(BigDecimal.valueOf(count), MEAN_SCALE, RoundingMode.HALF_UP);
+            return new Aggregate(count, sum, mean, min, max);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.recreation.calculator.domain;
+
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * При app.routes.segment-storage=packed переносит массивы нового маршрута из JSONB в bytea-колонки.
+ * Массив, который не помещается в упакованный формат, остаётся в JSONB.
+ * Бин Spring: Hibernate получает слушатель через SpringBeanContainer.
+ */
+@Component
+public class SegmentStorageListener {
+
+    private final boolean packed;
+
+    public SegmentStorageListener(@Value("${app.routes.segment-storage:jsonb}") String segmentStorage) {
+        this.packed = "packed".equalsIgnoreCase(segmentStorage);
+    }
+
+    @PrePersist
+    public void beforePersist(Route route) {
+        if (!packed) {
+            return;
+        }
+        pack(route.getTdArray(), route::setTdArray, route::setTdPacked);
+        pack(route.getDtArray(), route::setDtArray, route::setDtPacked);
+        pack(route.getDgArray(), route::setDgArray, route::setDgPacked);
+        pack(route.getVArray(), route::setVArray, route::setVPacked);
+    }
+
+    private static void pack(List<BigDecimal> values,
+                             Consumer<List<BigDecimal>> jsonb,
+                             Consumer<List<BigDecimal>> bytea) {
+        if (SegmentArrayCodec.canEncode(values)) {
+            bytea.accept(values);
+            jsonb.accept(null);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.recreation.calculator.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Диапазон дробных значений [from, to] с шагом step. Без to — одно значение from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DecimalRangeRequest {
+
+    @NotNull(message = "Начало диапазона обязательно")
+    @DecimalMin(value = "0.1", message = "Начало диапазона должно быть больше 0")
+    @JsonProperty("from")
+    private BigDecimal from;
+
+    @JsonProperty("to")
+    private BigDecimal to;
+
+    @DecimalMin(value = "0.1", message = "Шаг диапазона должен быть не меньше 0.1")
+    @JsonProperty("step")
+    private BigDecimal step;
+}
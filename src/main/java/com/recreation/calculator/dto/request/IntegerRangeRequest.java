@@ -0,0 +1,31 @@
+package com.recreation.calculator.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Диапазон целых значений [from, to] с шагом step. Без to — одно значение from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IntegerRangeRequest {
+
+    @NotNull(message = "Начало диапазона обязательно")
+    @Min(value = 1, message = "Начало диапазона должно быть больше 0")
+    @JsonProperty("from")
+    private Integer from;
+
+    @JsonProperty("to")
+    private Integer to;
+
+    @Min(value = 1, message = "Шаг диапазона должен быть больше 0")
+    @JsonProperty("step")
+    private Integer step;
+}
@@ -0,0 +1,22 @@
+package com.recreation.calculator.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteSimulationRequest {
+
+    @NotEmpty(message = "Список вариантов обязателен")
+    @JsonProperty("scenarios")
+    private List<@Valid RouteScenarioRequest> scenarios;
+}
@@ -0,0 +1,65 @@
+package com.recreation.calculator.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Сетка параметров для перебора: декартово произведение диапазонов и наборов факторов.
+ * Для fixed_time обязателен tSut, для unlimited_time — tSezon и tl.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteSweepRequest {
+
+    @NotBlank(message = "Тип маршрута по времени (fixed_time или unlimited_time) обязателен")
+    @Pattern(regexp = "fixed_time|unlimited_time", message = "Тип маршрута должен быть 'fixed_time' или 'unlimited_time'")
+    @JsonProperty("routeTimeType")
+    private String routeTimeType;
+
+    @NotNull(message = "Диапазон размера группы обязателен")
+    @Valid
+    @JsonProperty("gs")
+    private IntegerRangeRequest gs;
+
+    @Valid
+    @JsonProperty("tSut")
+    private DecimalRangeRequest tSut;
+
+    @Valid
+    @JsonProperty("tSezon")
+    private IntegerRangeRequest tSezon;
+
+    @Valid
+    @JsonProperty("tl")
+    private IntegerRangeRequest tl;
+
+    @NotEmpty(message = "Массив времени прохождения участков обязателен")
+    @JsonProperty("tdArray")
+    private List<BigDecimal> tdArray;
+
+    @JsonProperty("ecologicalFactors")
+    private List<Integer> ecologicalFactors;
+
+    @JsonProperty("managementFactors")
+    private List<Integer> managementFactors;
+
+    // Перебирать все подмножества факторов, а не только переданный набор
+    @JsonProperty("ecologicalFactorSubsets")
+    private boolean ecologicalFactorSubsets;
+
+    @JsonProperty("managementFactorSubsets")
+    private boolean managementFactorSubsets;
+}
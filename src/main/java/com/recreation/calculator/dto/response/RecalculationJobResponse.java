@@ -0,0 +1,40 @@
+package com.recreation.calculator.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecalculationJobResponse {
+
+    private Long id;
+
+    // running, stopped, completed или failed
+    private String status;
+
+    private Long processed;
+    private Long total;
+    private Long lastRouteId;
+
+    // Скорость и оценка окончания по текущему запуску; null, если задание выполняется не на этом узле
+    private Double routesPerSecond;
+    private Long etaSeconds;
+
+    private String error;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+}
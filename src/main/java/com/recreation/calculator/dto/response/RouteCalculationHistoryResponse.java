@@ -0,0 +1,32 @@
+package com.recreation.calculator.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteCalculationHistoryResponse {
+
+    private Integer formulaVersion;
+    private BigDecimal cfn;
+    private BigDecimal mCoefficient;
+    private Integer bcc;
+    private Integer pcc;
+    private Integer rcc;
+    private Integer maxGroups;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime calculatedAt;
+
+    // Когда версия записана в историю
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime recordedAt;
+}
@@ -22,6 +22,7 @@ public class RouteCalculationResponse {
     private Integer pcc;
     private Integer rcc;
     private Integer maxGroups;
+    private Integer formulaVersion;
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime createdAt;
@@ -0,0 +1,21 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteCalculationStatusResponse {
+
+    private Long routeId;
+
+    // pending, done или failed
+    private String status;
+
+    // Заполняется для status = done
+    private RouteCalculationResponse calculation;
+}
@@ -37,7 +37,8 @@ public class RouteDetailResponse {
     private List<Integer> ecologicalFactors;
     private List<Integer> managementFactors;
 
-    // Расчёты
+    // Расчёты: pending — расчёт ещё в очереди (app.calculations.mode=async), calculation пуст
+    private String calculationStatus;
     private RouteCalculationResponse calculation;
 
     // Рекомендации
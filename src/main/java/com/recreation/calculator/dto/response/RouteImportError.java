@@ -0,0 +1,21 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteImportError {
+
+    // Порядковый номер маршрута во входных данных (с нуля)
+    private int index;
+    private String routeName;
+    private String message;
+    private Map<String, String> fieldErrors;
+}
@@ -0,0 +1,26 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteImportResponse {
+
+    private int received;
+    private int imported;
+    private int failed;
+
+    @Builder.Default
+    private List<Long> routeIds = new ArrayList<>();
+
+    @Builder.Default
+    private List<RouteImportError> errors = new ArrayList<>();
+}
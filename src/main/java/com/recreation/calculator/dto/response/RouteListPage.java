@@ -0,0 +1,20 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteListPage {
+
+    private List<RouteListResponse> items;
+
+    // Курсор следующей страницы, null если это последняя страница
+    private String nextCursor;
+}
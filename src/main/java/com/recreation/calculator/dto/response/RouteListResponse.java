@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
@@ -25,4 +26,9 @@ public class RouteListResponse {
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime createdAt;
+
+    // Из агрегатов маршрута, без чтения JSONB-массивов
+    private Integer segmentCount;
+    private BigDecimal totalTd;
+    private BigDecimal totalDt;
 }
@@ -0,0 +1,25 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteScenarioResult {
+
+    // Порядковый номер варианта в запросе (с нуля)
+    private int index;
+    private String label;
+    private BigDecimal cfn;
+    private BigDecimal mCoefficient;
+    private Integer bcc;
+    private Integer pcc;
+    private Integer rcc;
+    private Integer maxGroups;
+}
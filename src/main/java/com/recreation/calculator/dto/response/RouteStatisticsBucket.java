@@ -0,0 +1,20 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteStatisticsBucket {
+
+    // Полуинтервал [from, to)
+    private BigDecimal from;
+    private BigDecimal to;
+    private Long count;
+}
@@ -0,0 +1,36 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteStatisticsGroup {
+
+    // null в итоговой строке по всем маршрутам
+    private String routeType;
+    private String routeTimeType;
+
+    private Long routeCount;
+    // Маршруты с готовым расчётом
+    private Long calculatedCount;
+
+    private Long totalBcc;
+    private Long totalPcc;
+    private Long totalRcc;
+
+    private BigDecimal avgMaxGroups;
+    private BigDecimal avgCfn;
+    private BigDecimal avgMCoefficient;
+
+    // Процентили (percentile_cont) по маршрутам с расчётом
+    private Double medianRcc;
+    private Double p90Rcc;
+    private Double medianMaxGroups;
+}
@@ -0,0 +1,24 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteStatisticsResponse {
+
+    // Итог по всем маршрутам пользователя
+    private RouteStatisticsGroup total;
+
+    // По типу маршрута и типу времени
+    private List<RouteStatisticsGroup> groups;
+
+    // Распределение CFN с шагом 0.1, пустые интервалы включены
+    private List<RouteStatisticsBucket> cfnHistogram;
+}
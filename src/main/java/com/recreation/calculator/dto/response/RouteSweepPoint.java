@@ -0,0 +1,37 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Строка NDJSON-ответа перебора: один вариант параметров и его результат.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteSweepPoint {
+
+    @Builder.Default
+    private String type = "point";
+
+    // Порядковый номер варианта в сетке (с нуля)
+    private long index;
+    private Integer gs;
+    private BigDecimal tSut;
+    private Integer tSezon;
+    private Integer tl;
+    private List<Integer> ecologicalFactors;
+    private List<Integer> managementFactors;
+    private BigDecimal cfn;
+    private BigDecimal mCoefficient;
+    private Integer maxGroups;
+    private Integer bcc;
+    private Integer pcc;
+    private Integer rcc;
+}
@@ -0,0 +1,27 @@
+package com.recreation.calculator.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Последняя строка NDJSON-ответа перебора.
+ * frontier — для каждого размера группы вариант с наибольшей ёмкостью
+ * (RCC для fixed_time, BCC для unlimited_time), при равенстве — первый по сетке.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RouteSweepSummary {
+
+    @Builder.Default
+    private String type = "summary";
+
+    private long evaluated;
+    private long elapsedMs;
+    private List<RouteSweepPoint> frontier;
+}
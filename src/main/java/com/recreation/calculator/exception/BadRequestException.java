@@ -0,0 +1,8 @@
+package com.recreation.calculator.exception;
+
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
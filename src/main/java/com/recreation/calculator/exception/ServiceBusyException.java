@@ -0,0 +1,18 @@
+package com.recreation.calculator.exception;
+
+/**
+ * Сервис временно перегружен, клиенту стоит повторить запрос через retryAfterSeconds.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,18 @@
+package com.recreation.calculator.exception;
+
+/**
+ * Превышен лимит запросов, повторить можно через retryAfterSeconds.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
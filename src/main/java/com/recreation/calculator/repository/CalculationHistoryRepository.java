@@ -0,0 +1,46 @@
+package com.recreation.calculator.repository;
+
+import com.recreation.calculator.dto.response.RouteCalculationHistoryResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Чтение истории расчётов (route_calculation_history). Записи добавляет триггер на route_calculations,
+ * условие по route_id оставляет в плане одну хэш-секцию.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CalculationHistoryRepository {
+
+    private static final String BY_ROUTE_SQL =
+            "SELECT formula_version, cfn, m_coefficient, bcc, pcc, rcc, max_groups, calculated_at, recorded_at " +
+            "FROM route_calculation_history WHERE route_id = ? ORDER BY id DESC LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Версии расчёта маршрута, начиная с последней.
+     */
+    public List<RouteCalculationHistoryResponse> findByRouteId(long routeId, int limit) {
+        return jdbcTemplate.query(BY_ROUTE_SQL, (rs, rowNum) -> RouteCalculationHistoryResponse.builder()
+                .formulaVersion(rs.getInt(1))
+                .cfn(rs.getBigDecimal(2))
+                .mCoefficient(rs.getBigDecimal(3))
+                .bcc(rs.getObject(4, Integer.class))
+                .pcc(rs.getObject(5, Integer.class))
+                .rcc(rs.getObject(6, Integer.class))
+                .maxGroups(rs.getObject(7, Integer.class))
+                .calculatedAt(toLocalDateTime(rs.getTimestamp(8)))
+                .recordedAt(toLocalDateTime(rs.getTimestamp(9)))
+                .build(), routeId, limit);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.recreation.calculator.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.SegmentStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Чтение входных данных расчёта ёмкости: маршруты в памяти с полями, нужными RouteCalculationService.calculate.
+ * Для расчёта достаточно агрегатов T_d и факторов — JSONB/bytea-массивы участков не читаются.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CalculationInputRepository {
+
+    private static final TypeReference<List<Integer>> INTEGER_LIST = new TypeReference<>() {
+    };
+
+    private static final String COLUMNS =
+            "SELECT id, route_time_type, t_sut, t_sezon, gs, tl, segment_count, td_sum, " +
+            "ecological_factors::text, management_factors::text FROM routes ";
+
+    private static final String BY_IDS_SQL = COLUMNS + "WHERE id = ANY(?)";
+
+    private static final String KEYSET_SQL = COLUMNS +
+            "WHERE id > ? AND id <= ? AND calculation_status <> 'pending' " +
+            "AND NOT EXISTS (SELECT 1 FROM route_calculations c " +
+            "WHERE c.route_id = routes.id AND c.formula_version >= ?) " +
+            "ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Входные данные маршрутов одним запросом. Удалённые маршруты в результат не попадают.
+     */
+    public List<Route> findByIds(List<Long> routeIds) {
+        return jdbcTemplate.query(BY_IDS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", routeIds.toArray())),
+                inputMapper());
+    }
+
+    /**
+     * Следующая порция маршрутов с id в (afterId, maxId] по возрастанию id, чей расчёт отсутствует
+     * или получен формулами старше formulaVersion; ожидающие фонового расчёта пропускаются.
+     * Строки читаются курсором по fetchSize, если вызов идёт в транзакции.
+     */
+    public List<Route> findChunkAfter(long afterId, long maxId, int formulaVersion, int limit, int fetchSize) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(KEYSET_SQL);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, afterId);
+            ps.setLong(2, maxId);
+            ps.setInt(3, formulaVersion);
+            ps.setInt(4, limit);
+            return ps;
+        }, inputMapper());
+    }
+
+    private RowMapper<Route> inputMapper() {
+        return (rs, rowNum) -> Route.builder()
+                .id(rs.getLong(1))
+                .routeTimeType(rs.getString(2))
+                .tSut(rs.getBigDecimal(3))
+                .tSezon(rs.getInt(4))
+                .gs(rs.getInt(5))
+                .tl(rs.getInt(6))
+                .segmentStatistics(SegmentStatistics.builder()
+                        .segmentCount(rs.getObject(7, Integer.class))
+                        .tdSum(rs.getBigDecimal(8))
+                        .build())
+                .ecologicalFactors(parseFactors(rs, 9))
+                .managementFactors(parseFactors(rs, 10))
+                .build();
+    }
+
+    private List<Integer> parseFactors(ResultSet rs, int column) throws SQLException {
+        String json = rs.getString(column);
+        if (json == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(json, INTEGER_LIST);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Некорректный массив факторов маршрута", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.recreation.calculator.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Очередь фоновых расчётов (таблица calculation_outbox) и статус расчёта маршрутов.
+ * Методы claim* должны вызываться в транзакции: строки остаются заблокированными до её конца.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CalculationOutboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO calculation_outbox (route_id) VALUES (?)";
+
+    private static final String CLAIM_SQL =
+            "SELECT id, route_id, attempts FROM calculation_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM_BY_ID_SQL =
+            "SELECT id, route_id, attempts FROM calculation_outbox WHERE id = ? FOR UPDATE SKIP LOCKED";
+
+    private static final String MARK_STATUS_SQL =
+            "UPDATE routes SET calculation_status = ? WHERE id = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM calculation_outbox WHERE id = ?";
+
+    private static final String RECORD_FAILURE_SQL =
+            "UPDATE calculation_outbox SET attempts = attempts + 1, last_error = ? WHERE id = ?";
+
+    private static final String STATUS_SQL =
+            "SELECT calculation_status FROM routes WHERE id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void enqueue(List<Long> routeIds) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, routeIds, routeIds.size(), (ps, routeId) -> ps.setLong(1, routeId));
+    }
+
+    public List<OutboxEntry> claim(int limit) {
+        return jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new OutboxEntry(rs.getLong(1), rs.getLong(2), rs.getInt(3)), limit);
+    }
+
+    public Optional<OutboxEntry> claimById(long id) {
+        return jdbcTemplate.query(CLAIM_BY_ID_SQL,
+                (rs, rowNum) -> new OutboxEntry(rs.getLong(1), rs.getLong(2), rs.getInt(3)), id).stream().findFirst();
+    }
+
+    public void markStatus(List<Long> routeIds, String status) {
+        jdbcTemplate.batchUpdate(MARK_STATUS_SQL, routeIds, routeIds.size(), (ps, routeId) -> {
+            ps.setString(1, status);
+            ps.setLong(2, routeId);
+        });
+    }
+
+    public void delete(List<Long> entryIds) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, entryIds, entryIds.size(), (ps, id) -> ps.setLong(1, id));
+    }
+
+    public void recordFailure(long entryId, String error) {
+        jdbcTemplate.update(RECORD_FAILURE_SQL, error, entryId);
+    }
+
+    public Optional<String> findStatus(long routeId, long userId) {
+        return jdbcTemplate.queryForList(STATUS_SQL, String.class, routeId, userId).stream().findFirst();
+    }
+
+    public record OutboxEntry(long id, long routeId, int attempts) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.recreation.calculator.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Состояние заданий пересчёта (таблица recalculation_jobs).
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecalculationJobRepository {
+
+    private static final String COLUMNS =
+            "SELECT id, status, last_route_id, max_route_id, processed, total, error, " +
+            "started_at, updated_at, finished_at FROM recalculation_jobs ";
+
+    private static final String BY_ID_SQL = COLUMNS + "WHERE id = ?";
+
+    private static final String LATEST_SQL = COLUMNS + "ORDER BY id DESC LIMIT 1";
+
+    private static final String SCOPE_SQL =
+            "SELECT COALESCE(MAX(id), 0), COUNT(*) FROM routes WHERE calculation_status <> 'pending' " +
+            "AND NOT EXISTS (SELECT 1 FROM route_calculations c " +
+            "WHERE c.route_id = routes.id AND c.formula_version >= ?)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO recalculation_jobs (status, max_route_id, total) VALUES ('running', ?, ?) RETURNING id";
+
+    // Задание захватывается, только если оно не выполняется или его узел перестал обновлять контрольную точку
+    private static final String CLAIM_SQL =
+            "UPDATE recalculation_jobs SET status = 'running', error = NULL, finished_at = NULL, updated_at = ? " +
+            "WHERE id = ? AND (status IN ('stopped', 'failed') OR (status = 'running' AND updated_at < ?))";
+
+    private static final String CHECKPOINT_SQL =
+            "UPDATE recalculation_jobs SET last_route_id = ?, processed = processed + ?, updated_at = ? WHERE id = ?";
+
+    private static final String FINISH_SQL =
+            "UPDATE recalculation_jobs SET status = ?, error = ?, updated_at = ?, finished_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<RecalculationJob> findById(long id) {
+        return jdbcTemplate.query(BY_ID_SQL, jobMapper(), id).stream().findFirst();
+    }
+
+    public Optional<RecalculationJob> findLatest() {
+        return jdbcTemplate.query(LATEST_SQL, jobMapper()).stream().findFirst();
+    }
+
+    /**
+     * Создаёт задание на маршруты, существующие на момент запуска, расчёт которых отсутствует
+     * или получен формулами старше formulaVersion.
+     */
+    public long create(int formulaVersion) {
+        long[] scope = jdbcTemplate.queryForObject(SCOPE_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, formulaVersion);
+        return jdbcTemplate.queryForObject(INSERT_SQL, Long.class, scope[0], scope[1]);
+    }
+
+    public boolean claim(long id, LocalDateTime now, LocalDateTime staleBefore) {
+        return jdbcTemplate.update(CLAIM_SQL, now, id, staleBefore) > 0;
+    }
+
+    public void checkpoint(long id, long lastRouteId, int processed, LocalDateTime now) {
+        jdbcTemplate.update(CHECKPOINT_SQL, lastRouteId, processed, now, id);
+    }
+
+    public void finish(long id, String status, String error, LocalDateTime now) {
+        jdbcTemplate.update(FINISH_SQL, status, error, now, now, id);
+    }
+
+    private static RowMapper<RecalculationJob> jobMapper() {
+        return (rs, rowNum) -> new RecalculationJob(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getLong(3),
+                rs.getLong(4),
+                rs.getLong(5),
+                rs.getLong(6),
+                rs.getString(7),
+                toLocalDateTime(rs.getTimestamp(8)),
+                toLocalDateTime(rs.getTimestamp(9)),
+                toLocalDateTime(rs.getTimestamp(10)));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    public record RecalculationJob(long id, String status, long lastRouteId, long maxRouteId,
+                                   long processed, long total, String error,
+                                   LocalDateTime startedAt, LocalDateTime updatedAt, LocalDateTime finishedAt) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.recreation.calculator.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.SegmentArrayCodec;
+import com.recreation.calculator.domain.SegmentStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная запись маршрутов и расчётов через JDBC.
+ * Идентификаторы берутся из последовательности заранее, поэтому вставки идут настоящими батчами,
+ * а не по одной строке, как при IDENTITY в Hibernate.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RouteBatchRepository {
+
+    private static final String NEXT_ROUTE_IDS_SQL =
+            "SELECT nextval('routes_id_seq') FROM generate_series(1, ?)";
+
+    private static final String INSERT_ROUTE_SQL =
+            "INSERT INTO routes (id, user_id, route_name, route_type, route_time_type, t_sut, t_sezon, gs, tl, " +
+            "td_array, dt_array, dg_array, v_array, ecological_factors, management_factors, created_at, updated_at, " +
+            "segment_count, td_sum, td_mean, td_min, td_max, dt_sum, dt_mean, dt_min, dt_max, " +
+            "dg_sum, dg_mean, dg_min, dg_max, v_sum, v_mean, v_min, v_max, td_packed, dt_packed, dg_packed, v_packed, " +
+            "calculation_status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb, ?, ?, " +
+            "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_CALCULATION_SQL =
+            "INSERT INTO route_calculations " +
+            "(route_id, cfn, m_coefficient, bcc, pcc, rcc, max_groups, created_at, formula_version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // route_id уникален: при пересчёте текущая строка перезаписывается, прежняя версия остаётся в истории
+    private static final String UPSERT_CALCULATION_SQL = INSERT_CALCULATION_SQL +
+            " ON CONFLICT (route_id) DO UPDATE SET cfn = EXCLUDED.cfn, m_coefficient = EXCLUDED.m_coefficient, " +
+            "bcc = EXCLUDED.bcc, pcc = EXCLUDED.pcc, rcc = EXCLUDED.rcc, max_groups = EXCLUDED.max_groups, " +
+            "created_at = EXCLUDED.created_at, formula_version = EXCLUDED.formula_version";
+
+    // Строки с массивами в JSONB; заблокированные другим узлом пропускаются
+    private static final String SELECT_UNPACKED_SQL =
+            "SELECT id, td_array::text, dt_array::text, dg_array::text, v_array::text FROM routes " +
+            "WHERE id > ? AND (td_array IS NOT NULL OR dt_array IS NOT NULL " +
+            "OR dg_array IS NOT NULL OR v_array IS NOT NULL) " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // Меняются только массивы, упакованные в этой пачке
+    private static final String PACK_SEGMENTS_SQL = "UPDATE routes SET " +
+            "td_packed = COALESCE(?, td_packed), td_array = CASE WHEN ? THEN NULL ELSE td_array END, " +
+            "dt_packed = COALESCE(?, dt_packed), dt_array = CASE WHEN ? THEN NULL ELSE dt_array END, " +
+            "dg_packed = COALESCE(?, dg_packed), dg_array = CASE WHEN ? THEN NULL ELSE dg_array END, " +
+            "v_packed = COALESCE(?, v_packed), v_array = CASE WHEN ? THEN NULL ELSE v_array END " +
+            "WHERE id = ?";
+
+    private static final TypeReference<List<BigDecimal>> DECIMAL_LIST = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.routes.segment-storage:jsonb}")
+    private String segmentStorage;
+
+    public List<Long> nextRouteIds(int count) {
+        return jdbcTemplate.queryForList(NEXT_ROUTE_IDS_SQL, Long.class, count);
+    }
+
+    public void insertRoutes(List<Route> routes) {
+        boolean packed = "packed".equalsIgnoreCase(segmentStorage);
+        jdbcTemplate.batchUpdate(INSERT_ROUTE_SQL, routes, routes.size(), (ps, route) -> {
+            ps.setLong(1, route.getId());
+            ps.setLong(2, route.getUser().getId());
+            ps.setString(3, route.getRouteName());
+            ps.setString(4, route.getRouteType());
+            ps.setString(5, route.getRouteTimeType());
+            ps.setBigDecimal(6, route.getTSut());
+            ps.setInt(7, route.getTSezon());
+            ps.setInt(8, route.getGs());
+            ps.setInt(9, route.getTl());
+            setSegments(ps, 10, 35, route.getTdArray(), packed);
+            setSegments(ps, 11, 36, route.getDtArray(), packed);
+            setSegments(ps, 12, 37, route.getDgArray(), packed);
+            setSegments(ps, 13, 38, route.getVArray(), packed);
+            ps.setString(14, toJson(route.getEcologicalFactors()));
+            ps.setString(15, toJson(route.getManagementFactors()));
+            ps.setObject(16, route.getCreatedAt());
+            ps.setObject(17, route.getUpdatedAt());
+
+            SegmentStatistics stats = route.getSegmentStatistics() != null
+                    ? route.getSegmentStatistics()
+                    : SegmentStatistics.of(route.getTdArray(), route.getDtArray(), route.getDgArray(), route.getVArray());
+            ps.setObject(18, stats.getSegmentCount(), Types.INTEGER);
+            ps.setBigDecimal(19, stats.getTdSum());
+            ps.setBigDecimal(20, stats.getTdMean());
+            ps.setBigDecimal(21, stats.getTdMin());
+            ps.setBigDecimal(22, stats.getTdMax());
+            ps.setBigDecimal(23, stats.getDtSum());
+            ps.setBigDecimal(24, stats.getDtMean());
+            ps.setBigDecimal(25, stats.getDtMin());
+            ps.setBigDecimal(26, stats.getDtMax());
+            ps.setBigDecimal(27, stats.getDgSum());
+            ps.setBigDecimal(28, stats.getDgMean());
+            ps.setBigDecimal(29, stats.getDgMin());
+            ps.setBigDecimal(30, stats.getDgMax());
+            ps.setBigDecimal(31, stats.getVSum());
+            ps.setBigDecimal(32, stats.getVMean());
+            ps.setBigDecimal(33, stats.getVMin());
+            ps.setBigDecimal(34, stats.getVMax());
+            ps.setString(39, route.getCalculationStatus());
+        });
+    }
+
+    public void insertCalculations(List<RouteCalculation> calculations) {
+        writeCalculations(INSERT_CALCULATION_SQL, calculations);
+    }
+
+    public void upsertCalculations(List<RouteCalculation> calculations) {
+        writeCalculations(UPSERT_CALCULATION_SQL, calculations);
+    }
+
+    private void writeCalculations(String sql, List<RouteCalculation> calculations) {
+        jdbcTemplate.batchUpdate(sql, calculations, calculations.size(), (ps, calc) -> {
+            ps.setLong(1, calc.getRoute().getId());
+            ps.setBigDecimal(2, calc.getCfn());
+            ps.setBigDecimal(3, calc.getMCoefficient());
+            ps.setObject(4, calc.getBcc(), Types.INTEGER);
+            ps.setObject(5, calc.getPcc(), Types.INTEGER);
+            ps.setObject(6, calc.getRcc(), Types.INTEGER);
+            ps.setObject(7, calc.getMaxGroups(), Types.INTEGER);
+            ps.setObject(8, calc.getCreatedAt());
+            ps.setInt(9, calc.getFormulaVersion());
+        });
+    }
+
+    /**
+     * Переносит в bytea массивы следующей пачки маршрутов с id больше afterId.
+     * Вызывается в транзакции; массивы, которые не упаковываются, остаются в JSONB.
+     */
+    public PackedBatch packSegments(long afterId, int limit) {
+        List<Object[]> updates = new ArrayList<>();
+        long lastId = jdbcTemplate.query(SELECT_UNPACKED_SQL, rs -> {
+            long last = afterId;
+            while (rs.next()) {
+                last = rs.getLong(1);
+                Object[] params = new Object[9];
+                boolean changed = false;
+                for (int i = 0; i < 4; i++) {
+                    byte[] packed = pack(rs.getString(i + 2));
+                    params[i * 2] = packed;
+                    params[i * 2 + 1] = packed != null;
+                    changed |= packed != null;
+                }
+                params[8] = last;
+                if (changed) {
+                    updates.add(params);
+                }
+            }
+            return last;
+        }, afterId, limit);
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(PACK_SEGMENTS_SQL, updates, new int[]{
+                    Types.BINARY, Types.BOOLEAN, Types.BINARY, Types.BOOLEAN,
+                    Types.BINARY, Types.BOOLEAN, Types.BINARY, Types.BOOLEAN, Types.BIGINT});
+        }
+        return new PackedBatch(lastId, updates.size());
+    }
+
+    private byte[] pack(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return SegmentArrayCodec.encode(objectMapper.readValue(json, DECIMAL_LIST));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Некорректный JSONB-массив маршрута", e);
+        }
+    }
+
+    // Массив пишется либо в bytea, либо (если не упаковывается или хранение jsonb) в JSONB
+    private void setSegments(PreparedStatement ps, int jsonbIndex, int packedIndex,
+                             List<BigDecimal> values, boolean packed) throws SQLException {
+        byte[] bytes = packed ? SegmentArrayCodec.encode(values) : null;
+        ps.setString(jsonbIndex, bytes == null ? toJson(values) : null);
+        ps.setBytes(packedIndex, bytes);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать массив маршрута", e);
+        }
+    }
+
+    /**
+     * @param lastId        id последнего просмотренного маршрута (afterId, если пачка пуста)
+     * @param packedRoutes  сколько маршрутов изменено
+     */
+    public record PackedBatch(long lastId, int packedRoutes) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.recreation.calculator.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Чтение маршрутов пользователя с расчётами для экспорта: однонаправленный курсор с fetch size,
+ * строки передаются обработчику по одной и в памяти не накапливаются.
+ * Postgres читает курсором только внутри транзакции — вызывать из транзакции только для чтения.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RouteExportRepository {
+
+    private static final String EXPORT_SQL =
+            "SELECT r.id, r.route_name, r.route_type, r.route_time_type, r.t_sut, r.t_sezon, r.gs, r.tl, " +
+            "r.segment_count, r.td_sum, r.dt_sum, r.calculation_status, " +
+            "c.cfn, c.m_coefficient, c.bcc, c.pcc, c.rcc, c.max_groups, c.formula_version, r.created_at " +
+            "FROM routes r LEFT JOIN route_calculations c ON c.route_id = r.id " +
+            "WHERE r.user_id = ? ORDER BY r.created_at DESC, r.id DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void streamUserRoutes(long userId, int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, userId);
+            return ps;
+        }, handler);
+    }
+}
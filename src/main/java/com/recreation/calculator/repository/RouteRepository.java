@@ -1,11 +1,15 @@
 package com.recreation.calculator.repository;
 
 import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.dto.response.RouteListResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,9 +18,37 @@ public interface RouteRepository extends JpaRepository<Route, Long> {
 
     List<Route> findByUserIdOrderByCreatedAtDesc(Long userId);
 
+    // Проекция для списка: один запрос без JSONB-массивов и без отдельного select расчёта на каждый маршрут
+    @Query("SELECT new com.recreation.calculator.dto.response.RouteListResponse(" +
+           "r.id, r.routeName, r.routeType, r.tl, c.bcc, c.pcc, c.rcc, r.createdAt, " +
+           "r.segmentStatistics.segmentCount, r.segmentStatistics.tdSum, r.segmentStatistics.dtSum) " +
+           "FROM Route r LEFT JOIN r.calculation c " +
+           "WHERE r.user.id = :userId " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<RouteListResponse> findListPage(@Param("userId") Long userId, Pageable pageable);
+
+    // Следующая страница после курсора (created_at, id)
+    @Query("SELECT new com.recreation.calculator.dto.response.RouteListResponse(" +
+           "r.id, r.routeName, r.routeType, r.tl, c.bcc, c.pcc, c.rcc, r.createdAt, " +
+           "r.segmentStatistics.segmentCount, r.segmentStatistics.tdSum, r.segmentStatistics.dtSum) " +
+           "FROM Route r LEFT JOIN r.calculation c " +
+           "WHERE r.user.id = :userId " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<RouteListResponse> findListPageAfter(@Param("userId") Long userId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
     @Query("SELECT r FROM Route r LEFT JOIN FETCH r.calculation WHERE r.id = :routeId AND r.user.id = :userId")
     Optional<Route> findByIdAndUserIdWithCalculation(@Param("routeId") Long routeId, @Param("userId") Long userId);
 
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM Route r WHERE r.id = :routeId AND r.user.id = :userId")
+    int deleteByIdAndUserId(@Param("routeId") Long routeId, @Param("userId") Long userId);
+
     @Query("SELECT COUNT(r) FROM Route r WHERE r.user.id = :userId")
     long countByUserId(@Param("userId") Long userId);
 }
@@ -0,0 +1,77 @@
+package com.recreation.calculator.repository;
+
+import com.recreation.calculator.dto.response.RouteStatisticsGroup;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Агрегаты по маршрутам пользователя, считаются в Postgres: строки маршрутов в приложение не передаются.
+ * Опираются на индексы idx_routes_user_type и idx_calculations_route_results (V14).
+ */
+@Repository
+@RequiredArgsConstructor
+public class RouteStatisticsRepository {
+
+    // Пустой набор в GROUPING SETS даёт итоговую строку, GROUPING(...) = 3 отличает её от групп
+    private static final String GROUPS_SQL =
+            "SELECT r.route_type, r.route_time_type, GROUPING(r.route_type, r.route_time_type) AS total_row, " +
+            "COUNT(*), COUNT(c.route_id), SUM(c.bcc), SUM(c.pcc), SUM(c.rcc), " +
+            "ROUND(AVG(c.max_groups), 2), ROUND(AVG(c.cfn), 2), ROUND(AVG(c.m_coefficient), 2), " +
+            "percentile_cont(0.5) WITHIN GROUP (ORDER BY c.rcc), " +
+            "percentile_cont(0.9) WITHIN GROUP (ORDER BY c.rcc), " +
+            "percentile_cont(0.5) WITHIN GROUP (ORDER BY c.max_groups) " +
+            "FROM routes r LEFT JOIN route_calculations c ON c.route_id = r.id " +
+            "WHERE r.user_id = ? " +
+            "GROUP BY GROUPING SETS ((r.route_type, r.route_time_type), ()) " +
+            "ORDER BY total_row DESC, r.route_type, r.route_time_type";
+
+    private static final String CFN_HISTOGRAM_SQL =
+            "SELECT width_bucket(c.cfn, CAST(? AS numeric), CAST(? AS numeric), ?) AS bucket, COUNT(*) " +
+            "FROM routes r JOIN route_calculations c ON c.route_id = r.id " +
+            "WHERE r.user_id = ? GROUP BY bucket";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Итоговая строка первой (routeType и routeTimeType равны null), затем группы по типу и типу времени.
+     * Для пользователя без маршрутов — только итоговая строка с нулями.
+     */
+    public List<RouteStatisticsGroup> findGroups(long userId) {
+        return jdbcTemplate.query(GROUPS_SQL, (rs, rowNum) -> {
+            boolean total = rs.getInt(3) != 0;
+            return RouteStatisticsGroup.builder()
+                    .routeType(total ? null : rs.getString(1))
+                    .routeTimeType(total ? null : rs.getString(2))
+                    .routeCount(rs.getLong(4))
+                    .calculatedCount(rs.getLong(5))
+                    .totalBcc(rs.getObject(6, Long.class))
+                    .totalPcc(rs.getObject(7, Long.class))
+                    .totalRcc(rs.getObject(8, Long.class))
+                    .avgMaxGroups(rs.getBigDecimal(9))
+                    .avgCfn(rs.getBigDecimal(10))
+                    .avgMCoefficient(rs.getBigDecimal(11))
+                    .medianRcc(rs.getObject(12, Double.class))
+                    .p90Rcc(rs.getObject(13, Double.class))
+                    .medianMaxGroups(rs.getObject(14, Double.class))
+                    .build();
+        }, userId);
+    }
+
+    /**
+     * Число расчётов в каждом из buckets равных интервалов CFN на [from, to) — результат width_bucket.
+     * Индекс 0 и buckets + 1 — значения за пределами диапазона.
+     * Границы передаются как numeric: с double Postgres выбрал бы width_bucket(float8, ...), и CFN на границе
+     * интервала (0.30) после приведения к float попадал бы в предыдущий интервал.
+     */
+    public long[] findCfnHistogram(long userId, BigDecimal from, BigDecimal to, int buckets) {
+        long[] counts = new long[buckets + 2];
+        jdbcTemplate.query(CFN_HISTOGRAM_SQL, (RowCallbackHandler) rs -> counts[rs.getInt(1)] = rs.getLong(2),
+                from, to, buckets, userId);
+        return counts;
+    }
+}
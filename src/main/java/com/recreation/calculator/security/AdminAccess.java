@@ -0,0 +1,26 @@
+package com.recreation.calculator.security;
+
+import com.recreation.calculator.exception.UnauthorizedAccessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Проверка административных операций: администраторы задаются списком email в app.admin.emails.
+ */
+@Component
+public class AdminAccess {
+
+    private final Set<String> adminEmails;
+
+    public AdminAccess(@Value("${app.admin.emails:}") Set<String> adminEmails) {
+        this.adminEmails = Set.copyOf(adminEmails);
+    }
+
+    public void requireAdmin(String email) {
+        if (email == null || !adminEmails.contains(email)) {
+            throw new UnauthorizedAccessException("Доступ запрещён");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.recreation.calculator.security;
+
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+
+/**
+ * Principal запроса: email из токена и идентификатор пользователя из claim uid.
+ */
+public class AuthenticatedUser extends User {
+
+    // null для старых токенов без claim uid
+    private final Long userId;
+
+    public AuthenticatedUser(String email, Long userId) {
+        super(email, "", new ArrayList<>());
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -1,27 +1,44 @@
 package com.recreation.calculator.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
 
+    // Время проверки токена (подпись или попадание в кэш) по результату
+    private final Timer validTimer;
+    private final Timer invalidTimer;
+
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, MeterRegistry meterRegistry) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.validTimer = verificationTimer(meterRegistry, "valid");
+        this.invalidTimer = verificationTimer(meterRegistry, "invalid");
+    }
+
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("auth.jwt.verification")
+                .description("Время проверки JWT в фильтре")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -29,15 +46,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (jwt != null && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
+            Claims claims = null;
+            if (jwt != null) {
+                long started = System.nanoTime();
+                claims = jwtTokenProvider.parseClaims(jwt).orElse(null);
+                (claims != null ? validTimer : invalidTimer).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+
+            if (claims != null) {
+                // Токен разобран один раз, дальше по запросу используем claims
+                request.setAttribute(JwtTokenProvider.CLAIMS_ATTRIBUTE, claims);
+                String username = claims.getSubject();
 
-                // ← ИСПРАВЛЕНИЕ: создаем UserDetails объект правильно
-                User userDetails = new User(
-                        username,
-                        "", // пароль не нужен в токене
-                        new ArrayList<>() // authorities (роли)
-                );
+                AuthenticatedUser userDetails = new AuthenticatedUser(username, JwtTokenProvider.getUserId(claims));
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
@@ -1,69 +1,133 @@
 package com.recreation.calculator.security;
 
+import com.recreation.calculator.cache.ExpiringCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    // Атрибут запроса, в который фильтр кладёт проверенные claims
+    public static final String CLAIMS_ATTRIBUTE = JwtTokenProvider.class.getName() + ".CLAIMS";
+
+    // Идентификатор пользователя, чтобы не искать его по email на каждом запросе
+    public static final String USER_ID_CLAIM = "uid";
+
     @Value("${app.jwt.secret:recreation-calculator-super-secret-key-that-is-long-enough-for-HS512}")
     private String jwtSecret;
 
     @Value("${app.jwt.expiration:86400000}")
     private long jwtExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${app.jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    // Уже проверенные токены: ключ — SHA-256 токена, запись живёт до exp
+    private ExpiringCache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = new ExpiringCache<>(cacheMaxSize);
     }
 
-    public String generateToken(String username) {
+    public String generateToken(String username, Long userId) {
         return Jwts.builder()
                 .subject(username)
+                .claim(USER_ID_CLAIM, userId)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Проверяет подпись и срок действия токена. Повторные проверки того же токена
+     * до его истечения берутся из кэша без HMAC.
+     */
+    public Optional<Claims> parseClaims(String token) {
+        String key = hash(token);
+        Claims cached = verifiedTokens.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(key, claims, claims.getExpiration().getTime());
+            }
+            return Optional.of(claims);
+        } catch (Exception ex) {
+            // Невалидные токены считает метрика auth.jwt.verification{result=invalid}; ERROR на каждый
+            // такой запрос усиливал бы перебор токенов нагрузкой на логирование
+            log.debug("Invalid JWT token: {}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
 
-        return claims.getSubject();
+    /**
+     * Забывает проверенные токены пользователя: следующий запрос с ними снова проверит подпись и срок.
+     */
+    public void invalidateSubject(String subject) {
+        verifiedTokens.invalidateIf(claims -> subject.equals(claims.getSubject()));
+    }
+
+    public void invalidateAll() {
+        verifiedTokens.clear();
+    }
+
+    public String getUsernameFromToken(String token) {
+        return getClaims(token).getSubject();
     }
 
     public String getEmailFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return getClaims(token).getSubject();
+    }
 
-        return claims.getSubject();
+    /**
+     * Идентификатор пользователя из claims или null для токенов, выданных до появления claim uid.
+     */
+    public static Long getUserId(Claims claims) {
+        return claims.get(USER_ID_CLAIM, Long.class);
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+        return parseClaims(token).isPresent();
+    }
 
-            return true;
-        } catch (Exception ex) {
-            log.error("Invalid JWT token: {}", ex.getMessage());
+    private Claims getClaims(String token) {
+        return parseClaims(token)
+                .orElseThrow(() -> new IllegalArgumentException("Невалидный JWT токен"));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
         }
-        return false;
     }
 }
@@ -0,0 +1,223 @@
+package com.recreation.calculator.security;
+
+import com.recreation.calculator.exception.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ограничение попыток входа и регистрации до проверки пароля, чтобы перебор не тратил CPU на BCrypt.
+ * Token bucket на email и на IP клиента. После threshold неудачных входов подряд пара (email, IP) блокируется
+ * с экспоненциально растущей паузой: чужие ошибки с другого адреса не закрывают владельцу вход в аккаунт,
+ * а весь IP неудачами не блокируется — за одним адресом (NAT, прокси) много пользователей.
+ * Состояние бакета меняется CAS без блокировок. Простаивающие бакеты и превышение max-buckets
+ * убираются по расписанию, поток входа карту не перебирает.
+ */
+@Component
+@Slf4j
+public class LoginRateLimiter {
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final Limit emailLimit;
+    private final Limit ipLimit;
+    private final int failureThreshold;
+    private final long backoffBaseNanos;
+    private final long backoffMaxNanos;
+    private final int maxBuckets;
+    private final long idleTtlNanos;
+
+    public LoginRateLimiter(@Value("${app.security.login-limit.email.capacity:5}") int emailCapacity,
+                            @Value("${app.security.login-limit.email.refill-per-minute:5}") int emailRefill,
+                            @Value("${app.security.login-limit.ip.capacity:30}") int ipCapacity,
+                            @Value("${app.security.login-limit.ip.refill-per-minute:30}") int ipRefill,
+                            @Value("${app.security.login-limit.failure-threshold:3}") int failureThreshold,
+                            @Value("${app.security.login-limit.backoff-base-ms:1000}") long backoffBaseMs,
+                            @Value("${app.security.login-limit.backoff-max-ms:900000}") long backoffMaxMs,
+                            @Value("${app.security.login-limit.max-buckets:100000}") int maxBuckets,
+                            @Value("${app.security.login-limit.idle-ttl-ms:900000}") long idleTtlMs) {
+        this.emailLimit = new Limit(emailCapacity, emailRefill);
+        this.ipLimit = new Limit(ipCapacity, ipRefill);
+        this.failureThreshold = failureThreshold;
+        this.backoffBaseNanos = TimeUnit.MILLISECONDS.toNanos(backoffBaseMs);
+        this.backoffMaxNanos = TimeUnit.MILLISECONDS.toNanos(backoffMaxMs);
+        this.maxBuckets = maxBuckets;
+        this.idleTtlNanos = TimeUnit.MILLISECONDS.toNanos(idleTtlMs);
+    }
+
+    /**
+     * Проверяет паузу после неудач пары (email, IP) и списывает попытку с бакетов email и IP
+     * или бросает TooManyRequestsException.
+     */
+    public void checkLogin(String email, String clientIp) {
+        String failureKey = failureKey(email, clientIp);
+        Bucket failures = buckets.get(failureKey);
+        if (failures != null) {
+            reject(failureKey, failures.blockedFor(System.nanoTime()));
+        }
+        acquire(ipKey(clientIp), ipLimit);
+        acquire(emailKey(email), emailLimit);
+    }
+
+    public void checkRegister(String clientIp) {
+        acquire("register:" + clientIp, ipLimit);
+    }
+
+    public void recordFailure(String email, String clientIp) {
+        long now = System.nanoTime();
+        bucket(failureKey(email, clientIp), emailLimit, now).fail(now);
+    }
+
+    /**
+     * Сбрасывает счётчик неудач пары (email, IP). Бакет IP не трогается: успешный вход в свой аккаунт
+     * не должен возвращать адресу попытки для перебора чужих.
+     */
+    public void recordSuccess(String email, String clientIp) {
+        Bucket bucket = buckets.get(failureKey(email, clientIp));
+        if (bucket != null) {
+            bucket.reset();
+        }
+    }
+
+    /**
+     * Удаляет простаивающие бакеты, затем давно не использованные — до 90% max-buckets.
+     */
+    @Scheduled(fixedDelayString = "${app.security.login-limit.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now, idleTtlNanos));
+
+        if (buckets.size() > maxBuckets) {
+            buckets.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastSeen()))
+                    .limit(buckets.size() - maxBuckets * 9 / 10)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(buckets::remove);
+        }
+        if (before != buckets.size()) {
+            log.debug("Evicted {} login buckets", before - buckets.size());
+        }
+    }
+
+    private void acquire(String key, Limit limit) {
+        long now = System.nanoTime();
+        reject(key, bucket(key, limit, now).tryAcquire(now));
+    }
+
+    private void reject(String key, long waitNanos) {
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            log.debug("Login rate limit exceeded for {}", key);
+            throw new TooManyRequestsException("Слишком много попыток, повторите через " + retryAfter + " с", retryAfter);
+        }
+    }
+
+    private Bucket bucket(String key, Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(limit, now));
+    }
+
+    private static String emailKey(String email) {
+        return "email:" + (email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + clientIp;
+    }
+
+    private static String failureKey(String email, String clientIp) {
+        return "fail:" + clientIp + ":" + emailKey(email);
+    }
+
+    private record Limit(int capacity, double tokensPerNano) {
+
+        Limit(int capacity, int refillPerMinute) {
+            this(capacity, refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1));
+        }
+    }
+
+    private record State(double tokens, long refilledAt, int failures, long blockedUntil) {
+    }
+
+    private final class Bucket {
+
+        private final Limit limit;
+        private final AtomicReference<State> state;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.state = new AtomicReference<>(new State(limit.capacity(), now, 0, now));
+        }
+
+        /**
+         * @return 0, если попытка разрешена, иначе сколько наносекунд ждать
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                State current = state.get();
+                if (current.blockedUntil() - now > 0) {
+                    return current.blockedUntil() - now;
+                }
+
+                double tokens = Math.min(limit.capacity(),
+                        current.tokens() + (now - current.refilledAt()) * limit.tokensPerNano());
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / limit.tokensPerNano());
+                }
+
+                State next = new State(tokens - 1, now, current.failures(), current.blockedUntil());
+                if (state.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        long blockedFor(long now) {
+            return Math.max(0, state.get().blockedUntil() - now);
+        }
+
+        void fail(long now) {
+            state.updateAndGet(current -> {
+                int failures = current.failures() + 1;
+                // До порога blockedUntil = now только отмечает активность, чтобы счётчик не удалился как простаивающий
+                long blockedUntil = Math.max(current.blockedUntil(), now);
+                if (failures >= failureThreshold) {
+                    int exponent = Math.min(failures - failureThreshold, 30);
+                    long pause = Math.min(backoffMaxNanos, backoffBaseNanos << exponent);
+                    if (pause < 0) {
+                        pause = backoffMaxNanos;
+                    }
+                    blockedUntil = now + pause;
+                }
+                return new State(current.tokens(), current.refilledAt(), failures, blockedUntil);
+            });
+        }
+
+        void reset() {
+            state.updateAndGet(current ->
+                    new State(current.tokens(), current.refilledAt(), 0, current.refilledAt()));
+        }
+
+        long lastSeen() {
+            State current = state.get();
+            return Math.max(current.refilledAt(), current.blockedUntil());
+        }
+
+        boolean isIdle(long now, long idleTtl) {
+            return now - lastSeen() > idleTtl;
+        }
+    }
+}
@@ -6,21 +6,30 @@ import com.recreation.calculator.dto.response.UserResponse;
 import com.recreation.calculator.exception.ResourceNotFoundException;
 import com.recreation.calculator.repository.UserRepository;
 import com.recreation.calculator.security.JwtTokenProvider;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Регистрация, вход и смена учётных данных.
+ * BCrypt выполняется вне транзакций: пока запрос ждёт очередь хеширования и считает хеш,
+ * он не держит соединение из пула. Пользователь читается в короткой транзакции, запись идёт
+ * отдельной транзакцией после проверки пароля и повторно сверяет хеш, который мог смениться за это время.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AuthService {
 
     private final UserRepository userRepository;
     private final JwtTokenProvider jwtTokenProvider;
+    private final UserIdentityService userIdentityService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -28,30 +37,39 @@ public class AuthService {
     @Value("${app.jwt.expiration:86400000}")
     private long jwtExpirationMs;
 
-    @Transactional(readOnly = true)
+    public AuthService(UserRepository userRepository,
+                       JwtTokenProvider jwtTokenProvider,
+                       UserIdentityService userIdentityService,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userIdentityService = userIdentityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+    }
+
     public AuthResponse login(String email, String password) {
-        log.info("Login attempt for user: {}", email);
+        log.debug("Login attempt for user: {}", email);
 
         if (email == null || email.isEmpty() || password == null || password.isEmpty()) {
             throw new ResourceNotFoundException("Email и пароль обязательны");
         }
 
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        User user = findUser(email);
 
         if (!passwordEncoder.matches(password, user.getPassword())) {
             throw new ResourceNotFoundException("Неверный пароль");
         }
 
-        String token = jwtTokenProvider.generateToken(email);
-        log.info("User {} successfully authenticated", email);
+        String token = jwtTokenProvider.generateToken(email, user.getId());
+        log.debug("User {} successfully authenticated", email);
 
         return AuthResponse.of(token, jwtExpirationMs, email);
     }
 
-    @Transactional
     public AuthResponse register(String email, String password, String confirmPassword) {
-        log.info("Registration attempt for email: {}", email);
+        log.debug("Registration attempt for email: {}", email);
 
         // Валидация паролей
         if (!password.equals(confirmPassword)) {
@@ -62,27 +80,30 @@ public class AuthService {
             throw new IllegalArgumentException("Пароль должен быть не менее 6 символов");
         }
 
-        // Проверка на существующего пользователя по email
-        if (userRepository.findByEmail(email).isPresent()) {
-            throw new IllegalArgumentException("Пользователь с таким email уже существует");
-        }
+        // Хешируем пароль до открытия транзакции
+        String encodedPassword = passwordEncoder.encode(password);
 
-        // Проверка на существующего пользователя по login (который равен email)
-        if (userRepository.findByLogin(email).isPresent()) {
-            throw new IllegalArgumentException("Пользователь с таким логином уже существует");
-        }
+        User user = transactionTemplate.execute(status -> {
+            // Проверка на существующего пользователя по email
+            if (userRepository.findByEmail(email).isPresent()) {
+                throw new IllegalArgumentException("Пользователь с таким email уже существует");
+            }
 
-        // Создание нового пользователя с login = email
-        User user = User.builder()
-                .email(email)
-                .login(email)  // ← Логин равен email
-                .password(passwordEncoder.encode(password))  // ← Хешируем пароль
-                .build();
+            // Проверка на существующего пользователя по login (который равен email)
+            if (userRepository.findByLogin(email).isPresent()) {
+                throw new IllegalArgumentException("Пользователь с таким логином уже существует");
+            }
 
-        userRepository.save(user);
+            // Создание нового пользователя с login = email
+            return userRepository.save(User.builder()
+                    .email(email)
+                    .login(email)  // ← Логин равен email
+                    .password(encodedPassword)
+                    .build());
+        });
 
         // Генерируем токен
-        String token = jwtTokenProvider.generateToken(email);
+        String token = jwtTokenProvider.generateToken(email, user.getId());
         log.info("User {} successfully registered", email);
 
         return AuthResponse.of(token, jwtExpirationMs, email);
@@ -90,7 +111,7 @@ public class AuthService {
 
     @Transactional(readOnly = true)
     public UserResponse getProfile(String email) {
-        log.info("Getting profile for user: {}", email);
+        log.debug("Getting profile for user: {}", email);
 
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
@@ -99,36 +120,37 @@ public class AuthService {
                 user.getCreatedAt(), user.getUpdatedAt());
     }
 
-    @Transactional
     public UserResponse changeEmail(String currentEmail, String newEmail, String password) {
-        log.info("Changing email for user: {} to {}", currentEmail, newEmail);
+        log.debug("Changing email for user: {} to {}", currentEmail, newEmail);
 
         // Проверяем пароль
-        User user = userRepository.findByEmail(currentEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        String checkedHash = findUser(currentEmail).getPassword();
+        if (!passwordEncoder.matches(password, checkedHash)) {
             throw new IllegalArgumentException("Неверный пароль");
         }
 
-        // Проверяем, что новый email не занят
-        if (userRepository.findByEmail(newEmail).isPresent()) {
-            throw new IllegalArgumentException("Email уже используется");
-        }
+        User user = transactionTemplate.execute(status -> {
+            User current = findCheckedUser(currentEmail, checkedHash, "Неверный пароль");
+
+            // Проверяем, что новый email не занят
+            if (userRepository.findByEmail(newEmail).isPresent()) {
+                throw new IllegalArgumentException("Email уже используется");
+            }
 
-        // Обновляем email и login (они одинаковые)
-        user.setEmail(newEmail);
-        user.setLogin(newEmail);
-        userRepository.save(user);
+            // Обновляем email и login (они одинаковые)
+            current.setEmail(newEmail);
+            current.setLogin(newEmail);
+            userIdentityService.invalidateAfterCommit(currentEmail);
+            return userRepository.save(current);
+        });
 
         log.info("Email changed successfully for user: {}", newEmail);
         return UserResponse.of(user.getId(), user.getEmail(), user.getLogin(),
                 user.getCreatedAt(), user.getUpdatedAt());
     }
 
-    @Transactional
     public void changePassword(String email, String oldPassword, String newPassword, String confirmPassword) {
-        log.info("Changing password for user: {}", email);
+        log.debug("Changing password for user: {}", email);
 
         // Проверяем новые пароли
         if (!newPassword.equals(confirmPassword)) {
@@ -140,17 +162,35 @@ public class AuthService {
         }
 
         // Проверяем старый пароль
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-
-        if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
+        String checkedHash = findUser(email).getPassword();
+        if (!passwordEncoder.matches(oldPassword, checkedHash)) {
             throw new IllegalArgumentException("Старый пароль неверный");
         }
 
+        String encodedPassword = passwordEncoder.encode(newPassword);
+
         // Обновляем пароль
-        user.setPassword(passwordEncoder.encode(newPassword));
-        userRepository.save(user);
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = findCheckedUser(email, checkedHash, "Старый пароль неверный");
+            user.setPassword(encodedPassword);
+            userRepository.save(user);
+        });
 
         log.info("Password changed successfully for user: {}", email);
     }
+
+    private User findUser(String email) {
+        return readTemplate.execute(status -> userRepository.findByEmail(email))
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+    }
+
+    // Пользователь в пишущей транзакции; хеш должен совпадать с тем, против которого проверялся пароль
+    private User findCheckedUser(String email, String checkedHash, String mismatchMessage) {
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        if (!user.getPassword().equals(checkedHash)) {
+            throw new IllegalArgumentException(mismatchMessage);
+        }
+        return user;
+    }
 }
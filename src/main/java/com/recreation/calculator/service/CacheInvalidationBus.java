@@ -0,0 +1,194 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.service.CacheInvalidationEvent.Type;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Межузловая инвалидация кэшей через Postgres LISTEN/NOTIFY.
+ * NOTIFY выполняется в самой пишущей транзакции: Postgres доставляет его только после коммита и отбрасывает
+ * при откате. На остальных узлах сообщение превращается в локальное CacheInvalidationEvent.
+ * Слушатель держит отдельное соединение вне пула; после обрыва и переподключения
+ * сообщения могли потеряться, поэтому узел сбрасывает все кэши.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus {
+
+    private static final String CHANNEL = "cache_invalidation";
+    private static final String NOTIFY_SQL =
+            "SELECT pg_notify('" + CHANNEL + "', payload) FROM unnest(?::text[]) AS payload";
+
+    // Отличает собственные сообщения: локальный кэш уже сброшен на месте записи
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean enabled;
+    private final int pollMs;
+    private final long maxBackoffMs;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                DataSourceProperties dataSourceProperties,
+                                @Value("${app.cache.invalidation.enabled:true}") boolean enabled,
+                                @Value("${app.cache.invalidation.poll-ms:500}") int pollMs,
+                                @Value("${app.cache.invalidation.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.dataSourceProperties = dataSourceProperties;
+        this.enabled = enabled;
+        this.pollMs = pollMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Сообщает остальным узлам об изменении. Вызывается в пишущей транзакции, сохраняющей изменение:
+     * NOTIFY идёт по её соединению, узлы получают сообщение после коммита, а ошибка откатывает
+     * транзакцию вместе с изменением. В read-only транзакции (она может идти на реплику, где NOTIFY невозможен)
+     * бросает IllegalStateException. Вне транзакции сообщение отправляется сразу, ошибка только логируется.
+     */
+    public void publish(Type type, Object key) {
+        publishAll(type, Collections.singletonList(key));
+    }
+
+    /**
+     * Сообщение для каждого ключа, одним запросом; требования к транзакции — как у {@link #publish(Type, Object)}.
+     */
+    public void publishAll(Type type, Collection<?> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        String[] payloads = keys.stream()
+                .map(key -> nodeId + ":" + type.name() + ":" + (key != null ? key : ""))
+                .toArray(String[]::new);
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                throw new IllegalStateException("Инвалидация кэша публикуется только из пишущей транзакции");
+            }
+            notify(payloads);
+            return;
+        }
+
+        try {
+            notify(payloads);
+        } catch (RuntimeException e) {
+            // Изменение уже сохранено; на остальных узлах запись истечёт по TTL или при следующем сбросе
+            log.warn("Failed to publish {} cache invalidation(s) of type {}: {}", payloads.length, type, e.getMessage());
+        }
+    }
+
+    private void notify(String[] payloads) {
+        jdbcTemplate.query(NOTIFY_SQL, (ResultSetExtractor<Void>) rs -> null, (Object) payloads);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            listener.join(pollMs * 2L);
+        }
+    }
+
+    private void listen() {
+        long backoffMs = 1000;
+        boolean reconnect = false;
+
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for cache invalidations on channel '{}'", CHANNEL);
+
+                if (reconnect) {
+                    dispatch(new CacheInvalidationEvent(Type.ALL, null));
+                }
+                backoffMs = 1000;
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener disconnected, retrying in {} ms: {}", backoffMs, e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        try {
+            Type type = Type.valueOf(parts[1]);
+            dispatch(new CacheInvalidationEvent(type, parts[2].isEmpty() ? null : parts[2]));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unknown cache invalidation '{}'", payload);
+        }
+    }
+
+    private void dispatch(CacheInvalidationEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Cache invalidation {} failed: {}", event, e.getMessage(), e);
+        }
+    }
+}
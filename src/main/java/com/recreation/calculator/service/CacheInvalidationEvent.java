@@ -0,0 +1,32 @@
+package com.recreation.calculator.service;
+
+/**
+ * Сообщение о том, что кэш на этом узле устарел из-за записи на другом узле (приходит через CacheInvalidationBus).
+ */
+public record CacheInvalidationEvent(Type type, String key) {
+
+    public enum Type {
+        // key — id маршрута
+        ROUTE,
+        // все маршруты, key не используется
+        ROUTES,
+        // key — email пользователя
+        USER,
+        // справочник рекомендаций, key не используется
+        RECOMMENDATIONS,
+        // сообщения могли потеряться (переподключение) — сбросить всё
+        ALL
+    }
+
+    public boolean affects(Type... types) {
+        if (type == Type.ALL) {
+            return true;
+        }
+        for (Type candidate : types) {
+            if (candidate == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
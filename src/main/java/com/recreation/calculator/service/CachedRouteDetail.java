@@ -0,0 +1,26 @@
+package com.recreation.calculator.service;
+
+/**
+ * Сериализованный RouteDetailResponse и его ETag.
+ */
+public record CachedRouteDetail(Long routeId, Long ownerId, byte[] body, String etag) {
+
+    /**
+     * Совпадает ли ETag с заголовком If-None-Match (учитываются списки, "*" и слабые ETag).
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
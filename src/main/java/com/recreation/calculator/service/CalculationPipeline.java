@@ -0,0 +1,276 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.exception.ResourceNotFoundException;
+import com.recreation.calculator.repository.CalculationInputRepository;
+import com.recreation.calculator.repository.CalculationOutboxRepository;
+import com.recreation.calculator.repository.CalculationOutboxRepository.OutboxEntry;
+import com.recreation.calculator.repository.RouteBatchRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фоновый расчёт ёмкости через transactional outbox.
+ * В режиме app.calculations.mode=async маршрут сохраняется со статусом pending и строкой в calculation_outbox
+ * в той же транзакции; воркеры забирают строки пачками через FOR UPDATE SKIP LOCKED, сохраняют расчёты
+ * JDBC-батчем и переводят маршруты в done — всё в одной транзакции, поэтому расчёт не теряется и не дублируется.
+ * Воркеры работают в любом режиме, чтобы дорабатывать очередь после переключения на sync.
+ */
+@Service
+@Slf4j
+public class CalculationPipeline {
+
+    private final CalculationOutboxRepository outboxRepository;
+    private final CalculationInputRepository calculationInputRepository;
+    private final RouteBatchRepository routeBatchRepository;
+    private final RouteCalculationService calculationService;
+    private final RouteDetailCache routeDetailCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean async;
+    private final boolean workerEnabled;
+    private final int threads;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final int maxAttempts;
+    private final long maxWaitMs;
+
+    // Будит воркеры после коммита новых строк outbox
+    private final Semaphore wakeUp = new Semaphore(0);
+
+    // Будит ожидающих статуса после каждой обработанной пачки
+    private final ReentrantLock completionLock = new ReentrantLock();
+    private final Condition batchCompleted = completionLock.newCondition();
+
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    public CalculationPipeline(CalculationOutboxRepository outboxRepository,
+                               CalculationInputRepository calculationInputRepository,
+                               RouteBatchRepository routeBatchRepository,
+                               RouteCalculationService calculationService,
+                               RouteDetailCache routeDetailCache,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${app.calculations.mode:sync}") String mode,
+                               @Value("${app.calculations.worker.enabled:true}") boolean workerEnabled,
+                               @Value("${app.calculations.worker.threads:2}") int threads,
+                               @Value("${app.calculations.worker.batch-size:100}") int batchSize,
+                               @Value("${app.calculations.worker.poll-interval-ms:1000}") long pollIntervalMs,
+                               @Value("${app.calculations.worker.max-attempts:5}") int maxAttempts,
+                               @Value("${app.calculations.max-wait-ms:30000}") long maxWaitMs) {
+        this.outboxRepository = outboxRepository;
+        this.calculationInputRepository = calculationInputRepository;
+        this.routeBatchRepository = routeBatchRepository;
+        this.calculationService = calculationService;
+        this.routeDetailCache = routeDetailCache;
+        this.transactionTemplate = transactionTemplate;
+        this.async = "async".equalsIgnoreCase(mode);
+        this.workerEnabled = workerEnabled;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Ставит маршруты в очередь расчёта. Вызывается в транзакции, сохранившей маршруты;
+     * воркеры будятся после её коммита.
+     */
+    public void enqueue(List<Long> routeIds) {
+        outboxRepository.enqueue(routeIds);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp.release(threads);
+                }
+            });
+        } else {
+            wakeUp.release(threads);
+        }
+    }
+
+    /**
+     * Ждёт, пока расчёт маршрута выйдет из pending, но не дольше waitMs (и не дольше app.calculations.max-wait-ms).
+     * Соединение с БД между проверками не удерживается; на других узлах готовность замечается опросом.
+     *
+     * @return текущий статус расчёта
+     */
+    public String awaitStatus(Long routeId, Long userId, long waitMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(waitMs, 0), maxWaitMs));
+
+        while (true) {
+            String status = outboxRepository.findStatus(routeId, userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Маршрут не найден"));
+
+            long remaining = deadline - System.nanoTime();
+            if (!Route.CALCULATION_PENDING.equals(status) || remaining <= 0) {
+                return status;
+            }
+
+            completionLock.lock();
+            try {
+                batchCompleted.await(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(250)), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return status;
+            } finally {
+                completionLock.unlock();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!workerEnabled || threads <= 0) {
+            return;
+        }
+        running = true;
+        workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("calculation-worker-"));
+        for (int i = 0; i < threads; i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Started {} calculation workers (mode: {})", threads, async ? "async" : "sync");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (workers != null) {
+            wakeUp.release(threads);
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            int processed;
+            try {
+                processed = drainBatch();
+            } catch (Exception e) {
+                log.error("Calculation worker failed: {}", e.getMessage(), e);
+                processed = 0;
+            }
+
+            if (processed == 0) {
+                try {
+                    wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    int drainBatch() {
+        List<OutboxEntry> claimed = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                claimed.addAll(outboxRepository.claim(batchSize));
+                process(claimed);
+            });
+        } catch (RuntimeException e) {
+            if (claimed.isEmpty()) {
+                throw e;
+            }
+            // Пачка откатилась целиком (ошибка БД или, например, битый JSON факторов) —
+            // проверяем строки по одной, чтобы найти проблемную и учесть её попытки
+            log.warn("Calculation batch of {} failed, retrying one by one: {}",
+                    claimed.size(), describe(e));
+            claimed.forEach(this::processSingle);
+        }
+
+        if (!claimed.isEmpty()) {
+            completed(claimed);
+        }
+        return claimed.size();
+    }
+
+    private void processSingle(OutboxEntry entry) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.claimById(entry.id()).ifPresent(claimed -> process(List.of(claimed))));
+        } catch (RuntimeException e) {
+            String cause = describe(e);
+            log.error("Calculation for route {} failed (attempt {}): {}", entry.routeId(), entry.attempts() + 1, cause);
+            transactionTemplate.executeWithoutResult(status -> {
+                outboxRepository.recordFailure(entry.id(), cause);
+                if (entry.attempts() + 1 >= maxAttempts) {
+                    outboxRepository.markStatus(List.of(entry.routeId()), Route.CALCULATION_FAILED);
+                    outboxRepository.delete(List.of(entry.id()));
+                }
+            });
+        }
+    }
+
+    // У части исключений (например, NullPointerException) нет сообщения
+    private static String describe(RuntimeException e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private void process(List<OutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Long> routeIds = entries.stream().map(OutboxEntry::routeId).toList();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<RouteCalculation> calculations = new ArrayList<>(entries.size());
+        for (Route route : calculationInputRepository.findByIds(routeIds)) {
+            RouteCalculation calculation = calculationService.calculate(route);
+            calculation.setCreatedAt(now);
+            calculations.add(calculation);
+        }
+
+        routeBatchRepository.insertCalculations(calculations);
+        outboxRepository.markStatus(routeIds, Route.CALCULATION_DONE);
+        outboxRepository.delete(entries.stream().map(OutboxEntry::id).toList());
+
+        log.debug("Calculated {} routes from outbox", calculations.size());
+    }
+
+    private void completed(List<OutboxEntry> entries) {
+        // В кэше мог остаться ответ со статусом pending
+        for (OutboxEntry entry : entries) {
+            routeDetailCache.evict(entry.routeId());
+        }
+
+        completionLock.lock();
+        try {
+            batchCompleted.signalAll();
+        } finally {
+            completionLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.recreation.calculator.service;
+
+/**
+ * Арифметика расчёта ёмкости на целых числах с фиксированной точкой.
+ * Значения передаются как unscaled long + scale (как у BigDecimal), коэффициенты и среднее T_d —
+ * в сотых долях. Округление совпадает с прежним BigDecimal-кодом: HALF_UP для среднего T_d,
+ * коэффициентов и PCC, ROUND_DOWN для max_groups и RCC.
+ * При переполнении бросается ArithmeticException.
+ */
+public final class CapacityKernel {
+
+    public static final int MAX_SCALE = 18;
+
+    public static final long ONE_HUNDREDTHS = 100;
+
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private CapacityKernel() {
+    }
+
+    /**
+     * sum / count с округлением HALF_UP до сотых.
+     */
+    public static long averageHundredths(long sumUnscaled, int scale, long count) {
+        if (scale >= 2) {
+            return divideHalfUp(sumUnscaled, Math.multiplyExact(pow10(scale - 2), count));
+        }
+        return divideHalfUp(Math.multiplyExact(sumUnscaled, pow10(2 - scale)), count);
+    }
+
+    /**
+     * 1.0 + сумма поправок, ограниченная [0.1, 1.0] и округлённая HALF_UP до сотых (CFN, M).
+     */
+    public static long clampedCoefficientHundredths(long deltaSumUnscaled, int scale) {
+        if (scale == 0) {
+            deltaSumUnscaled = Math.multiplyExact(deltaSumUnscaled, 10);
+            scale = 1;
+        }
+
+        long one = pow10(scale);
+        long min = one / 10;
+        long value = Math.addExact(one, deltaSumUnscaled);
+
+        if (value < min) {
+            value = min;
+        }
+        if (value > one) {
+            value = one;
+        }
+
+        if (scale >= 2) {
+            return divideHalfUp(value, pow10(scale - 2));
+        }
+        return value * 10;
+    }
+
+    /**
+     * max_groups = INT(T_сут / T_d), T_d в сотых.
+     */
+    public static int maxGroups(long tSutUnscaled, int tSutScale, long avgTdHundredths) {
+        long numerator = Math.multiplyExact(tSutUnscaled, ONE_HUNDREDTHS);
+        long denominator = Math.multiplyExact(avgTdHundredths, pow10(tSutScale));
+        return (int) (numerator / denominator);
+    }
+
+    /**
+     * BCC = max_groups * GS.
+     */
+    public static int bcc(int maxGroups, int gs) {
+        return maxGroups * gs;
+    }
+
+    /**
+     * PCC = BCC * CFN с округлением HALF_UP.
+     */
+    public static int pcc(int bcc, long cfnHundredths) {
+        return (int) divideHalfUp((long) bcc * cfnHundredths, ONE_HUNDREDTHS);
+    }
+
+    /**
+     * RCC = INT(PCC * M).
+     */
+    public static int rcc(int pcc, long mHundredths) {
+        return (int) (((long) pcc * mHundredths) / ONE_HUNDREDTHS);
+    }
+
+    /**
+     * BCC для неограниченного времени = INT(T_sezon / Tl) * GS.
+     */
+    public static int unlimitedBcc(int tSezon, int tl, int gs) {
+        return (tSezon / tl) * gs;
+    }
+
+    static long divideHalfUp(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        // |remainder| * 2 >= |denominator| без переполнения
+        long absRemainder = Math.abs(remainder);
+        long absDenominator = Math.abs(denominator);
+        if (absRemainder >= absDenominator - absRemainder) {
+            return (numerator < 0) == (denominator < 0) ? quotient + 1 : quotient - 1;
+        }
+        return quotient;
+    }
+
+    static long pow10(int exponent) {
+        if (exponent < 0 || exponent > MAX_SCALE) {
+            throw new ArithmeticException("Scale out of range: " + exponent);
+        }
+        return POW10[exponent];
+    }
+}
@@ -0,0 +1,47 @@
+package com.recreation.calculator.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Таймеры этапов RouteService.createRoute (метрика route.create.stage с тегом stage).
+ * Таймеры регистрируются один раз; на запросе — только запись в уже созданный таймер без поиска и блокировок.
+ */
+@Component
+public class CreateRouteMetrics {
+
+    public enum Stage {
+        USER_LOOKUP("user_lookup"),
+        ROUTE_INSERT("route_insert"),
+        CALCULATION("calculation"),
+        CALCULATION_INSERT("calculation_insert"),
+        MAPPING("mapping"),
+        RECOMMENDATIONS("recommendations");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    public CreateRouteMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("route.create.stage")
+                    .description("Время этапа создания маршрута")
+                    .tag("stage", stage.tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    public <T> T time(Stage stage, Supplier<T> action) {
+        return timers.get(stage).record(action);
+    }
+}
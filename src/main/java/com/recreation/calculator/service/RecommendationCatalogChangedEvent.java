@@ -0,0 +1,7 @@
+package com.recreation.calculator.service;
+
+/**
+ * Публикуется, когда перезагруженный справочник рекомендаций отличается от предыдущего.
+ */
+public record RecommendationCatalogChangedEvent(int size) {
+}
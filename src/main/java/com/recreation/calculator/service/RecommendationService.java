@@ -5,60 +5,144 @@ import com.recreation.calculator.dto.response.RecommendationResponse;
 import com.recreation.calculator.repository.RecommendationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Справочник рекомендаций хранится в памяти: неизменяемый снимок с индексом по номеру фактора
+ * за AtomicReference. Чтение идёт без обращения к БД и без блокировок, перезагрузка подменяет снимок целиком.
+ * Возвращаемые объекты общие для всех запросов — их нельзя изменять.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RecommendationService {
 
+    private static final String ECOLOGICAL = "ecological";
+    private static final String MANAGEMENT = "management";
+
     private final RecommendationRepository recommendationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheInvalidationBus cacheInvalidationBus;
 
-    @Transactional(readOnly = true)
-    public List<RecommendationResponse> getAllRecommendations() {
-        log.info("Fetching all recommendations");
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>();
 
-        List<Recommendation> recommendations = recommendationRepository.findAll();
+    public List<RecommendationResponse> getAllRecommendations() {
+        log.debug("Fetching all recommendations");
 
-        return recommendations.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return currentCatalog().all();
     }
 
-    @Transactional(readOnly = true)
     public List<RecommendationResponse> getRecommendationsForRoute(
-            List<Integer> ecologicalFactors, 
+            List<Integer> ecologicalFactors,
             List<Integer> managementFactors) {
 
-        log.info("Fetching recommendations for ecological factors: {} and management factors: {}", 
-                ecologicalFactors, managementFactors);
+        if (log.isDebugEnabled()) {
+            log.debug("Fetching recommendations for ecological factors: {} and management factors: {}",
+                    ecologicalFactors, managementFactors);
+        }
 
-        if ((ecologicalFactors == null || ecologicalFactors.isEmpty()) && 
+        if ((ecologicalFactors == null || ecologicalFactors.isEmpty()) &&
             (managementFactors == null || managementFactors.isEmpty())) {
             return new ArrayList<>();
         }
 
-        List<Integer> ecoFactors = ecologicalFactors != null ? ecologicalFactors : List.of();
-        List<Integer> mgmtFactors = managementFactors != null ? managementFactors : List.of();
+        Catalog current = currentCatalog();
+        List<RecommendationResponse> recommendations = new ArrayList<>();
+        collect(current.ecological(), ecologicalFactors, recommendations);
+        collect(current.management(), managementFactors, recommendations);
 
-        if (ecoFactors.isEmpty() && mgmtFactors.isEmpty()) {
-            return new ArrayList<>();
-        }
+        return recommendations;
+    }
 
-        List<Recommendation> recommendations = recommendationRepository
-                .findRecommendationsByFactors(
-                        ecoFactors.isEmpty() ? List.of(-1) : ecoFactors,
-                        mgmtFactors.isEmpty() ? List.of(-1) : mgmtFactors
-                );
+    /**
+     * Перечитывает справочник из БД и атомарно подменяет снимок.
+     * Если справочник изменился, остальные узлы перечитывают его сразу, не дожидаясь своего расписания.
+     * Без общей транзакции: findAll читает в своей read-only транзакции, а NOTIFY уходит в основную БД.
+     *
+     * @return количество рекомендаций в новом снимке
+     */
+    @Scheduled(fixedDelayString = "${app.recommendations.refresh-interval-ms:300000}",
+            initialDelayString = "${app.recommendations.refresh-interval-ms:300000}")
+    public int reload() {
+        return reload(true);
+    }
+
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationEvent event) {
+        if (event.affects(CacheInvalidationEvent.Type.RECOMMENDATIONS)) {
+            reload(false);
+        }
+    }
 
-        return recommendations.stream()
+    private int reload(boolean broadcast) {
+        List<RecommendationResponse> all = recommendationRepository.findAll().stream()
+                .sorted(Comparator.comparing(Recommendation::getId))
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .toList();
+
+        Catalog loaded = new Catalog(all, index(all, ECOLOGICAL), index(all, MANAGEMENT));
+        Catalog previous = catalog.getAndSet(loaded);
+
+        if (previous != null && !previous.all().equals(all)) {
+            eventPublisher.publishEvent(new RecommendationCatalogChangedEvent(all.size()));
+            if (broadcast) {
+                cacheInvalidationBus.publish(CacheInvalidationEvent.Type.RECOMMENDATIONS, null);
+            }
+        }
+
+        log.debug("Recommendation catalog loaded: {} entries", all.size());
+        return all.size();
+    }
+
+    private Catalog currentCatalog() {
+        Catalog current = catalog.get();
+        if (current == null) {
+            reload();
+            current = catalog.get();
+        }
+        return current;
+    }
+
+    private static void collect(RecommendationResponse[] index, List<Integer> factors,
+                                List<RecommendationResponse> target) {
+        if (factors == null) {
+            return;
+        }
+        for (Integer factor : factors) {
+            if (factor == null || factor < 0 || factor >= index.length) {
+                continue;
+            }
+            RecommendationResponse recommendation = index[factor];
+            if (recommendation != null && !target.contains(recommendation)) {
+                target.add(recommendation);
+            }
+        }
+    }
+
+    // Массив, где индекс — номер фактора
+    private static RecommendationResponse[] index(List<RecommendationResponse> all, String factorType) {
+        int maxNumber = -1;
+        for (RecommendationResponse recommendation : all) {
+            if (factorType.equals(recommendation.getFactorType()) && recommendation.getFactorNumber() >= 0) {
+                maxNumber = Math.max(maxNumber, recommendation.getFactorNumber());
+            }
+        }
+
+        RecommendationResponse[] index = new RecommendationResponse[maxNumber + 1];
+        for (RecommendationResponse recommendation : all) {
+            if (factorType.equals(recommendation.getFactorType()) && recommendation.getFactorNumber() >= 0) {
+                index[recommendation.getFactorNumber()] = recommendation;
+            }
+        }
+        return index;
     }
 
     private RecommendationResponse mapToResponse(Recommendation recommendation) {
@@ -70,4 +154,9 @@ public class RecommendationService {
                 .recommendationText(recommendation.getRecommendationText())
                 .build();
     }
+
+    private record Catalog(List<RecommendationResponse> all,
+                           RecommendationResponse[] ecological,
+                           RecommendationResponse[] management) {
+    }
 }
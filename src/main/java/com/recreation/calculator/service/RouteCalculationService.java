@@ -2,6 +2,7 @@ package com.recreation.calculator.service;
 
 import com.recreation.calculator.domain.Route;
 import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.SegmentStatistics;
 import com.recreation.calculator.repository.RouteCalculationRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
@@ -10,7 +11,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -18,12 +21,28 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RouteCalculationService {
 
+    // Версия формул: увеличивается при каждом изменении расчёта, старые версии остаются в истории
+    public static final int FORMULA_VERSION = 1;
+
+    // Значение по умолчанию, когда факторы не заданы (исторически со scale 1)
+    private static final BigDecimal DEFAULT_COEFFICIENT = new BigDecimal("1.0");
+    private static final BigDecimal ONE_COEFFICIENT = BigDecimal.valueOf(CapacityKernel.ONE_HUNDREDTHS, 2);
+    private static final BigDecimal MIN_COEFFICIENT = new BigDecimal("0.1");
+
     private final RouteCalculationRepository routeCalculationRepository;
 
     @Transactional
     public RouteCalculation saveCalculation(Route route) {
+        return routeCalculationRepository.save(calculate(route));
+    }
+
+    /**
+     * Рассчитывает ёмкость маршрута без сохранения в БД.
+     */
+    public RouteCalculation calculate(Route route) {
         RouteCalculation calculation = new RouteCalculation();
         calculation.setRoute(route);
+        calculation.setFormulaVersion(FORMULA_VERSION);
 
         // 1. ВСЕГДА РАССЧИТЫВАЕМ CFN и M
         BigDecimal cfn = calculateCfn(route.getEcologicalFactors());
@@ -39,74 +58,75 @@ public class RouteCalculationService {
             calculateUnlimitedTimeMetrics(route, calculation, cfn, mCoefficient);
         }
 
-        // 3. Сохранить в БД
-        return routeCalculationRepository.save(calculation);
+        return calculation;
     }
 
     // ====================================================
     // РАСЧЕТ КОЭФФИЦИЕНТОВ ИЗ JSONB
     // ====================================================
 
-    private BigDecimal calculateCfn(Object ecologicalFactors) {
-        if (ecologicalFactors == null) {
-            return new BigDecimal("1.0");
+    BigDecimal calculateCfn(Object ecologicalFactors) {
+        return calculateCoefficient(ecologicalFactors, "impact", "CFN");
+    }
+
+    BigDecimal calculateMCoefficient(Object managementFactors) {
+        return calculateCoefficient(managementFactors, "efficiency", "M коэффициента");
+    }
+
+    private BigDecimal calculateCoefficient(Object factors, String field, String name) {
+        if (factors == null) {
+            return DEFAULT_COEFFICIENT;
         }
 
         try {
-            BigDecimal cfn = new BigDecimal("1.0");
-
-            if (ecologicalFactors instanceof JsonNode) {
-                JsonNode node = (JsonNode) ecologicalFactors;
+            if (factors instanceof JsonNode node) {
+                BigDecimal delta = BigDecimal.ZERO;
                 for (JsonNode factor : node) {
-                    BigDecimal impact = new BigDecimal(factor.get("impact").asText());
-                    cfn = cfn.add(impact);
+                    delta = delta.add(new BigDecimal(factor.get(field).asText()));
                 }
+                // Ограничиваем [0.1, 1.0]
+                return clampedCoefficient(delta);
             }
 
-            // Ограничиваем [0.1, 1.0]
-            if (cfn.compareTo(new BigDecimal("0.1")) < 0) {
-                cfn = new BigDecimal("0.1");
-            }
-            if (cfn.compareTo(new BigDecimal("1.0")) > 0) {
-                cfn = new BigDecimal("1.0");
-            }
-
-            return cfn.setScale(2, BigDecimal.ROUND_HALF_UP);
+            return ONE_COEFFICIENT;
         } catch (Exception e) {
-            log.warn("Ошибка расчета CFN: {}", e.getMessage());
-            return new BigDecimal("1.0");
+            log.warn("Ошибка расчета {}: {}", name, e.getMessage());
+            return DEFAULT_COEFFICIENT;
         }
     }
 
-    private BigDecimal calculateMCoefficient(Object managementFactors) {
-        if (managementFactors == null) {
-            return new BigDecimal("1.0");
+    private BigDecimal clampedCoefficient(BigDecimal delta) {
+        if (delta.scale() < 0) {
+            delta = delta.setScale(0);
         }
-
-        try {
-            BigDecimal mCoefficient = new BigDecimal("1.0");
-
-            if (managementFactors instanceof JsonNode) {
-                JsonNode node = (JsonNode) managementFactors;
-                for (JsonNode factor : node) {
-                    BigDecimal efficiency = new BigDecimal(factor.get("efficiency").asText());
-                    mCoefficient = mCoefficient.add(efficiency);
-                }
+        if (delta.scale() <= CapacityKernel.MAX_SCALE) {
+            try {
+                return toCoefficient(CapacityKernel.clampedCoefficientHundredths(
+                        delta.unscaledValue().longValueExact(), delta.scale()));
+            } catch (ArithmeticException e) {
+                log.debug("Поправки не помещаются в long, считаем через BigDecimal: {}", e.getMessage());
             }
+        }
 
-            // Ограничиваем [0.1, 1.0]
-            if (mCoefficient.compareTo(new BigDecimal("0.1")) < 0) {
-                mCoefficient = new BigDecimal("0.1");
-            }
-            if (mCoefficient.compareTo(new BigDecimal("1.0")) > 0) {
-                mCoefficient = new BigDecimal("1.0");
-            }
+        BigDecimal value = BigDecimal.ONE.add(delta);
+        if (value.compareTo(MIN_COEFFICIENT) < 0) {
+            value = MIN_COEFFICIENT;
+        }
+        if (value.compareTo(BigDecimal.ONE) > 0) {
+            value = BigDecimal.ONE;
+        }
+        return toCoefficient(value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
 
-            return mCoefficient.setScale(2, BigDecimal.ROUND_HALF_UP);
-        } catch (Exception e) {
-            log.warn("Ошибка расчета M коэффициента: {}", e.getMessage());
-            return new BigDecimal("1.0");
+    private static BigDecimal toCoefficient(long hundredths) {
+        return hundredths == CapacityKernel.ONE_HUNDREDTHS ? ONE_COEFFICIENT : BigDecimal.valueOf(hundredths, 2);
+    }
+
+    static long toHundredths(BigDecimal coefficient) {
+        if (coefficient == ONE_COEFFICIENT || coefficient == DEFAULT_COEFFICIENT) {
+            return CapacityKernel.ONE_HUNDREDTHS;
         }
+        return coefficient.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
     }
 
     // ====================================================
@@ -116,44 +136,38 @@ public class RouteCalculationService {
     private void calculateFixedTimeMetrics(Route route, RouteCalculation calc,
                                            BigDecimal cfn, BigDecimal mCoefficient) {
         try {
-            // Рассчитываем среднее T_d
-            BigDecimal avgTd = calculateAverageTd(route.getTdArray());
+            // Рассчитываем среднее T_d (в сотых)
+            long avgTd = calculateAverageTd(route);
 
-            log.debug("avgTd: {}", avgTd);
+            log.debug("avgTd (сотые): {}", avgTd);
 
-            if (avgTd == null || avgTd.compareTo(BigDecimal.ZERO) <= 0) {
+            if (avgTd <= 0) {
                 log.warn("Ошибка: T_d <= 0 или NULL для маршрута {}", route.getId());
                 return;
             }
 
             // max_groups = INT(T_сут / T_d)
-            Integer maxGroups = route.getTSut()
-                    .divide(avgTd, 2, BigDecimal.ROUND_DOWN)
-                    .intValue();
+            int maxGroups = calculateMaxGroups(route.getTSut(), avgTd);
             calc.setMaxGroups(maxGroups);
 
             log.debug("maxGroups установлен: {}", maxGroups);
 
             // BCC = INT(T_сут / T_d) * GS
-            Integer bcc = maxGroups * route.getGs();
+            int bcc = CapacityKernel.bcc(maxGroups, route.getGs());
             calc.setBcc(bcc);
 
             // PCC = INT(BCC * CFN)
-            Integer pcc = BigDecimal.valueOf(bcc)
-                    .multiply(cfn)
-                    .setScale(0, BigDecimal.ROUND_HALF_UP)
-                    .intValue();
+            int pcc = CapacityKernel.pcc(bcc, toHundredths(cfn));
             calc.setPcc(pcc);
 
             // RCC = INT(PCC * M)
-            Integer rcc = BigDecimal.valueOf(pcc)
-                    .multiply(mCoefficient)
-                    .setScale(0, BigDecimal.ROUND_DOWN)
-                    .intValue();
+            int rcc = CapacityKernel.rcc(pcc, toHundredths(mCoefficient));
             calc.setRcc(rcc);
 
-            log.info("Расчеты для fixed_time: bcc={}, pcc={}, rcc={}, maxGroups={}",
-                    bcc, pcc, rcc, maxGroups);
+            if (log.isDebugEnabled()) {
+                log.debug("Расчеты для fixed_time: bcc={}, pcc={}, rcc={}, maxGroups={}",
+                        bcc, pcc, rcc, maxGroups);
+            }
 
         } catch (Exception e) {
             log.error("Ошибка расчета метрик для фиксированного времени: {}", e.getMessage(), e);
@@ -164,57 +178,124 @@ public class RouteCalculationService {
 // ВСПОМОГАТЕЛЬНЫЙ МЕТОД - ИСПРАВЛЕННЫЙ
 // ====================================================
 
-    private BigDecimal calculateAverageTd(Object tdArray) {
+    int calculateMaxGroups(BigDecimal tSut, long avgTdHundredths) {
+        if (tSut.scale() < 0) {
+            tSut = tSut.setScale(0);
+        }
+        if (tSut.scale() <= CapacityKernel.MAX_SCALE) {
+            try {
+                return CapacityKernel.maxGroups(tSut.unscaledValue().longValueExact(), tSut.scale(), avgTdHundredths);
+            } catch (ArithmeticException e) {
+                log.debug("T_сут / T_d не помещается в long, считаем через BigDecimal: {}", e.getMessage());
+            }
+        }
+        return tSut.divide(BigDecimal.valueOf(avgTdHundredths, 2), 2, RoundingMode.DOWN).intValue();
+    }
+
+    /**
+     * Среднее T_d в сотых по агрегатам маршрута; массив читается, только если агрегатов нет.
+     */
+    private long calculateAverageTd(Route route) {
+        SegmentStatistics stats = route.getSegmentStatistics();
+        if (stats == null || stats.getTdSum() == null
+                || stats.getSegmentCount() == null || stats.getSegmentCount() <= 0) {
+            return calculateAverageTd(route.getTdArray());
+        }
+
+        BigDecimal sum = stats.getTdSum();
+        if (sum.scale() < 0) {
+            sum = sum.setScale(0);
+        }
+        if (sum.scale() <= CapacityKernel.MAX_SCALE) {
+            try {
+                return CapacityKernel.averageHundredths(sum.unscaledValue().longValueExact(), sum.scale(),
+                        stats.getSegmentCount());
+            } catch (ArithmeticException e) {
+                log.debug("Сумма T_d не помещается в long, считаем через BigDecimal: {}", e.getMessage());
+            }
+        }
+        return sum.divide(BigDecimal.valueOf(stats.getSegmentCount()), 2, RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+    }
+
+    /**
+     * Среднее T_d в сотых (HALF_UP), 0 если посчитать нельзя.
+     */
+    long calculateAverageTd(Object tdArray) {
         if (tdArray == null) {
             log.warn("tdArray is NULL");
-            return BigDecimal.ZERO;
+            return 0;
         }
 
         try {
-            BigDecimal sum = BigDecimal.ZERO;
-            int count = 0;
-
-            // ГЛАВНОЕ ИЗМЕНЕНИЕ: tdArray из Route это List<BigDecimal>
+            // tdArray из Route это List<BigDecimal>
             if (tdArray instanceof List) {
                 @SuppressWarnings("unchecked")
                 List<BigDecimal> list = (List<BigDecimal>) tdArray;
 
                 if (list.isEmpty()) {
                     log.warn("tdArray is empty");
-                    return BigDecimal.ZERO;
+                    return 0;
                 }
 
-                for (BigDecimal item : list) {
-                    if (item != null) {
-                        sum = sum.add(item);
-                        count++;
-                    }
-                }
-            } else if (tdArray instanceof JsonNode) {
-                JsonNode node = (JsonNode) tdArray;
+                return averageHundredths(list);
+            } else if (tdArray instanceof JsonNode node) {
+                List<BigDecimal> list = new ArrayList<>(node.size());
                 for (JsonNode item : node) {
-                    sum = sum.add(new BigDecimal(item.asText()));
-                    count++;
+                    list.add(new BigDecimal(item.asText()));
                 }
+                return averageHundredths(list);
             } else {
                 log.warn("tdArray имеет неожиданный тип: {}", tdArray.getClass());
-                return BigDecimal.ZERO;
+                return 0;
             }
+        } catch (Exception e) {
+            log.error("Ошибка расчета среднего T_d: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
 
-            if (count == 0) {
-                log.warn("Нет элементов в tdArray");
-                return BigDecimal.ZERO;
+    private long averageHundredths(List<BigDecimal> values) {
+        int scale = 0;
+        int count = 0;
+        for (BigDecimal item : values) {
+            if (item != null) {
+                scale = Math.max(scale, item.scale());
+                count++;
             }
+        }
 
-            BigDecimal average = sum.divide(BigDecimal.valueOf(count), 2, BigDecimal.ROUND_HALF_UP);
-            log.debug("calculateAverageTd: sum={}, count={}, avg={}", sum, count, average);
+        if (count == 0) {
+            log.warn("Нет элементов в tdArray");
+            return 0;
+        }
 
-            return average;
+        if (scale <= CapacityKernel.MAX_SCALE) {
+            try {
+                long sum = 0;
+                for (BigDecimal item : values) {
+                    if (item != null) {
+                        sum = Math.addExact(sum, item.movePointRight(scale).longValueExact());
+                    }
+                }
+                long average = CapacityKernel.averageHundredths(sum, scale, count);
+                if (log.isDebugEnabled()) {
+                    log.debug("calculateAverageTd: sum={}, scale={}, count={}, avg={}", sum, scale, count, average);
+                }
+                return average;
+            } catch (ArithmeticException e) {
+                log.debug("T_d не помещается в long, считаем через BigDecimal: {}", e.getMessage());
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("Ошибка расчета среднего T_d: {}", e.getMessage(), e);
-            return BigDecimal.ZERO;
+        // Редкий случай: слишком большой scale или переполнение
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal item : values) {
+            if (item != null) {
+                sum = sum.add(item);
+            }
         }
+        return sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
     }
 
     // ====================================================
@@ -230,7 +311,7 @@ public class RouteCalculationService {
             }
 
             // BCC = INT(T_sezon / Tl) * GS
-            Integer bcc = (route.getTSezon() / route.getTl()) * route.getGs();
+            int bcc = CapacityKernel.unlimitedBcc(route.getTSezon(), route.getTl(), route.getGs());
             calc.setBcc(bcc);
 
             // Для неограниченного времени остальные поля остаются NULL
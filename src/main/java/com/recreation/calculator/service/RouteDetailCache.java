@@ -0,0 +1,177 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.dto.response.RouteDetailResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * LRU-кэш сериализованных ответов GET /routes/{id}, ограниченный суммарным размером в байтах.
+ * Маршрут после создания не меняется, поэтому запись инвалидируется только при удалении
+ * и при изменении справочника рекомендаций, в том числе на других узлах (CacheInvalidationBus).
+ * Ответы с расчётом в статусе pending не кэшируются.
+ * Загрузка идёт без блокировки, поэтому каждая инвалидация получает номер: ответ, загрузка которого
+ * началась до evict или clear, в кэш не кладётся.
+ */
+@Component
+@Slf4j
+public class RouteDetailCache {
+
+    private static final int MAX_TOMBSTONES = 4096;
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    // Номера инвалидаций: маршрут -> номер последнего evict, в порядке добавления
+    private final LinkedHashMap<Long, Long> tombstones = new LinkedHashMap<>();
+
+    // access-order: первым идёт давно не использованный маршрут
+    private final LinkedHashMap<Long, CachedRouteDetail> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private long invalidations;
+    // Загрузки, начатые раньше этого номера, в кэш не кладутся: был clear или вытеснен tombstone
+    private long untrackedBefore;
+
+    public RouteDetailCache(ObjectMapper objectMapper,
+                            @Value("${app.routes.detail-cache.max-bytes:67108864}") long maxBytes,
+                            @Value("${app.routes.detail-cache.max-entry-bytes:4194304}") long maxEntryBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * Возвращает закэшированный ответ владельца маршрута или загружает и сериализует его.
+     */
+    public CachedRouteDetail getOrLoad(Long routeId, Long ownerId, Supplier<RouteDetailResponse> loader) {
+        long loadStartedAt;
+        synchronized (entries) {
+            CachedRouteDetail cached = entries.get(routeId);
+            if (cached != null && cached.ownerId().equals(ownerId)) {
+                return cached;
+            }
+            loadStartedAt = invalidations;
+        }
+
+        RouteDetailResponse response = loader.get();
+        CachedRouteDetail loaded = serialize(routeId, ownerId, response);
+        // Ответ без готового расчёта изменится, когда воркер его посчитает
+        if (!Route.CALCULATION_PENDING.equals(response.getCalculationStatus())) {
+            put(loaded, loadStartedAt);
+        }
+        return loaded;
+    }
+
+    public void evict(Long routeId) {
+        synchronized (entries) {
+            CachedRouteDetail removed = entries.remove(routeId);
+            if (removed != null) {
+                totalBytes -= removed.body().length;
+            }
+
+            tombstones.remove(routeId);
+            tombstones.put(routeId, ++invalidations);
+            if (tombstones.size() > MAX_TOMBSTONES) {
+                Iterator<Long> eldest = tombstones.values().iterator();
+                untrackedBefore = eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Инвалидирует запись сразу и ещё раз после коммита текущей транзакции: чтение, начатое до коммита,
+     * могло загрузить маршрут, и после коммита его ответ в кэш уже не попадёт.
+     */
+    public void evictAfterCommit(Long routeId) {
+        evict(routeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(routeId);
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalBytes = 0;
+            tombstones.clear();
+            untrackedBefore = ++invalidations;
+        }
+    }
+
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationEvent event) {
+        if (event.affects(CacheInvalidationEvent.Type.ROUTES)) {
+            clear();
+        } else if (event.type() == CacheInvalidationEvent.Type.ROUTE) {
+            evict(Long.valueOf(event.key()));
+        }
+    }
+
+    @EventListener
+    public void onRecommendationCatalogChanged(RecommendationCatalogChangedEvent event) {
+        log.debug("Recommendation catalog changed, clearing route detail cache");
+        clear();
+    }
+
+    private void put(CachedRouteDetail detail, long loadStartedAt) {
+        long size = detail.body().length;
+        if (size > maxEntryBytes) {
+            return;
+        }
+
+        synchronized (entries) {
+            if (invalidatedSince(detail.routeId(), loadStartedAt)) {
+                return;
+            }
+
+            CachedRouteDetail previous = entries.put(detail.routeId(), detail);
+            if (previous != null) {
+                totalBytes -= previous.body().length;
+            }
+            totalBytes += size;
+
+            Iterator<Map.Entry<Long, CachedRouteDetail>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().body().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private boolean invalidatedSince(Long routeId, long loadStartedAt) {
+        if (loadStartedAt < untrackedBefore) {
+            return true;
+        }
+        Long evictedAt = tombstones.get(routeId);
+        return evictedAt != null && evictedAt > loadStartedAt;
+    }
+
+    private CachedRouteDetail serialize(Long routeId, Long ownerId, RouteDetailResponse response) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            return new CachedRouteDetail(routeId, ownerId, body, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать маршрут " + routeId, e);
+        }
+    }
+}
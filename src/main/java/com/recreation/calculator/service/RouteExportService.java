@@ -0,0 +1,278 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.exception.BadRequestException;
+import com.recreation.calculator.repository.RouteExportRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Экспорт маршрутов пользователя с расчётами в CSV или XLSX.
+ * Строки идут из курсора БД прямо в писатель формата; XLSX пишется через SXSSF, который держит в памяти
+ * только окно последних строк. Память не зависит от числа маршрутов.
+ */
+@Service
+@Slf4j
+public class RouteExportService {
+
+    public static final String CSV_CONTENT_TYPE = "text/csv; charset=UTF-8";
+    public static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    // Порядок совпадает со столбцами RouteExportRepository
+    private static final String[] HEADERS = {
+            "id", "route_name", "route_type", "route_time_type", "t_sut", "t_sezon", "gs", "tl",
+            "segment_count", "td_sum", "dt_sum", "calculation_status",
+            "cfn", "m_coefficient", "bcc", "pcc", "rcc", "max_groups", "formula_version", "created_at"
+    };
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final int XLSX_WINDOW_ROWS = 100;
+
+    // Лист XLSX вмещает 1 048 576 строк вместе с заголовком, дальше экспорт продолжается на следующем листе
+    private static final int XLSX_MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private static final String XLSX_SHEET_NAME = "Маршруты";
+
+    private final RouteExportRepository exportRepository;
+    private final TransactionTemplate readTemplate;
+    private final int fetchSize;
+
+    public RouteExportService(RouteExportRepository exportRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.routes.export.fetch-size:500}") int fetchSize) {
+        this.exportRepository = exportRepository;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    public enum Format {
+        CSV, XLSX;
+
+        public String contentType() {
+            return this == CSV ? CSV_CONTENT_TYPE : XLSX_CONTENT_TYPE;
+        }
+
+        public String fileName() {
+            return this == CSV ? "routes.csv" : "routes.xlsx";
+        }
+    }
+
+    /**
+     * Разбирает формат до начала ответа, чтобы ошибка вернулась обычным 400.
+     */
+    public Format parseFormat(String value) {
+        try {
+            return Format.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Неизвестный формат экспорта: " + value + " (допустимы csv, xlsx)");
+        }
+    }
+
+    public void export(Long userId, Format format, boolean gzip, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(target) : new XlsxRowWriter(target);
+        long[] rows = new long[1];
+        try {
+            writer.header();
+            readTemplate.executeWithoutResult(status -> exportRepository.streamUserRoutes(userId, fetchSize, rs -> {
+                try {
+                    writer.row(rs);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение — курсор закрывается вместе с транзакцией
+            throw e.getCause();
+        } finally {
+            writer.close();
+        }
+
+        if (target instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        out.flush();
+
+        log.debug("Exported {} routes for user {} as {} in {} ms",
+                rows[0], userId, format, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private interface RowWriter {
+
+        void header() throws IOException;
+
+        void row(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16384);
+        }
+
+        @Override
+        public void header() throws IOException {
+            // BOM: Excel иначе открывает UTF-8 с кириллицей в однобайтовой кодировке
+            writer.write('\uFEFF');
+            writer.write(String.join(",", HEADERS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            for (int i = 1; i <= HEADERS.length; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                writeValue(rs.getObject(i));
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof BigDecimal decimal) {
+                writer.write(decimal.toPlainString());
+            } else if (value instanceof Timestamp timestamp) {
+                writer.write(TIMESTAMP_FORMAT.format(timestamp.toLocalDateTime()));
+            } else if (value instanceof Number) {
+                writer.write(value.toString());
+            } else {
+                writeText(value.toString());
+            }
+        }
+
+        private void writeText(String text) throws IOException {
+            // Название маршрута задаёт пользователь: ячейку, начинающуюся с =, +, -, @, табуляции или \r,
+            // Excel открывает как формулу, поэтому она экранируется апострофом
+            if (!text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+                text = "'" + text;
+            }
+            boolean quote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() {
+            // Поток ответа закрывает контейнер
+        }
+    }
+
+    private static final class XlsxRowWriter implements RowWriter {
+
+        private final OutputStream out;
+        private final SXSSFWorkbook workbook;
+        private final CellStyle timestampStyle;
+        private SXSSFSheet sheet;
+        private int sheetCount;
+        private int rowIndex;
+
+        XlsxRowWriter(OutputStream out) {
+            this.out = out;
+            this.workbook = new SXSSFWorkbook(XLSX_WINDOW_ROWS);
+            this.workbook.setCompressTempFiles(true);
+            this.timestampStyle = workbook.createCellStyle();
+            this.timestampStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+        }
+
+        @Override
+        public void header() {
+            nextSheet();
+        }
+
+        private void nextSheet() {
+            sheetCount++;
+            sheet = workbook.createSheet(sheetCount == 1 ? XLSX_SHEET_NAME : XLSX_SHEET_NAME + " " + sheetCount);
+            rowIndex = 0;
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < HEADERS.length; i++) {
+                row.createCell(i).setCellValue(HEADERS[i]);
+            }
+            sheet.createFreezePane(0, 1);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            if (rowIndex == XLSX_MAX_ROWS) {
+                nextSheet();
+            }
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < HEADERS.length; i++) {
+                Object value = rs.getObject(i + 1);
+                if (value == null) {
+                    continue;
+                }
+                Cell cell = row.createCell(i);
+                if (value instanceof Timestamp timestamp) {
+                    cell.setCellValue(timestamp.toLocalDateTime());
+                    cell.setCellStyle(timestampStyle);
+                } else if (value instanceof Number number) {
+                    cell.setCellValue(number.doubleValue());
+                } else {
+                    cell.setCellValue(value.toString());
+                }
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            workbook.write(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Удаляет временные файлы SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.User;
+import com.recreation.calculator.dto.request.RouteCreateRequest;
+import com.recreation.calculator.dto.response.RouteImportError;
+import com.recreation.calculator.dto.response.RouteImportResponse;
+import com.recreation.calculator.repository.RouteBatchRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовый импорт маршрутов: владелец берётся из токена один раз на импорт, маршруты и расчёты
+ * пишутся JDBC-батчами, каждая пачка — в отдельной транзакции.
+ * Ошибки валидации и сохранения возвращаются по каждому элементу, не прерывая импорт:
+ * если пачка не сохранилась, её элементы сохраняются по одному.
+ * В режиме app.calculations.mode=async расчёты не выполняются, а ставятся в очередь в той же транзакции.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteImportService {
+
+    private final RouteBatchRepository routeBatchRepository;
+    private final RouteCalculationService calculationService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final CalculationPipeline calculationPipeline;
+
+    @Value("${app.routes.import.batch-size:500}")
+    private int batchSize;
+
+    public RouteImportResponse importRoutes(List<RouteCreateRequest> requests, Long userId) {
+        log.debug("Importing {} routes for user: {}", requests.size(), userId);
+
+        ImportContext context = new ImportContext(owner(userId));
+        for (RouteCreateRequest request : requests) {
+            context.accept(request);
+        }
+        context.flush();
+
+        return context.finish();
+    }
+
+    public RouteImportResponse importRoutes(InputStream ndjson, Long userId) throws IOException {
+        log.debug("Importing NDJSON route stream for user: {}", userId);
+
+        ImportContext context = new ImportContext(owner(userId));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                context.accept(objectMapper.readValue(line, RouteCreateRequest.class));
+            } catch (JsonProcessingException e) {
+                context.reject(null, "Некорректный JSON: " + e.getOriginalMessage(), null);
+            }
+        }
+        context.flush();
+
+        return context.finish();
+    }
+
+    // Для JDBC-вставки нужен только id владельца
+    private static User owner(Long userId) {
+        return User.builder().id(userId).build();
+    }
+
+    private List<Long> persistChunk(List<IndexedRequest> chunk, User owner) {
+        List<Long> ids = routeBatchRepository.nextRouteIds(chunk.size());
+        LocalDateTime now = LocalDateTime.now();
+
+        boolean async = calculationPipeline.isAsync();
+
+        List<Route> routes = new ArrayList<>(chunk.size());
+        List<RouteCalculation> calculations = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Route route = RouteService.toEntity(chunk.get(i).request(), owner);
+            route.setId(ids.get(i));
+            route.setCreatedAt(now);
+            route.setUpdatedAt(now);
+            routes.add(route);
+
+            if (async) {
+                route.setCalculationStatus(Route.CALCULATION_PENDING);
+                continue;
+            }
+
+            RouteCalculation calculation = calculationService.calculate(route);
+            calculation.setCreatedAt(now);
+            calculations.add(calculation);
+        }
+
+        routeBatchRepository.insertRoutes(routes);
+        if (async) {
+            calculationPipeline.enqueue(ids);
+        } else {
+            routeBatchRepository.insertCalculations(calculations);
+        }
+
+        return ids;
+    }
+
+    // У части исключений (например, NullPointerException) нет сообщения
+    private static String describe(RuntimeException e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private record IndexedRequest(int index, RouteCreateRequest request) {
+    }
+
+    private class ImportContext {
+
+        private final User owner;
+        private final RouteImportResponse report = RouteImportResponse.builder().build();
+        private final List<IndexedRequest> chunk = new ArrayList<>();
+        private int index;
+
+        ImportContext(User owner) {
+            this.owner = owner;
+        }
+
+        void accept(RouteCreateRequest request) {
+            if (request == null) {
+                reject(null, "Пустой элемент", null);
+                return;
+            }
+
+            Set<ConstraintViolation<RouteCreateRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                Map<String, String> fieldErrors = new LinkedHashMap<>();
+                for (ConstraintViolation<RouteCreateRequest> violation : violations) {
+                    fieldErrors.put(violation.getPropertyPath().toString(), violation.getMessage());
+                }
+                reject(request.getRouteName(), "Ошибка валидации входных данных", fieldErrors);
+                return;
+            }
+
+            chunk.add(new IndexedRequest(index++, request));
+            if (chunk.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(String routeName, String message, Map<String, String> fieldErrors) {
+            addError(index++, routeName, message, fieldErrors);
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            try {
+                imported(transactionTemplate.execute(status -> persistChunk(chunk, owner)));
+            } catch (RuntimeException e) {
+                if (chunk.size() == 1) {
+                    failed(chunk.get(0), e);
+                } else {
+                    // Пачка откатилась целиком — сохраняем строки по одной, чтобы ошибка осталась только у проблемной
+                    log.warn("Import chunk of {} routes failed, retrying one by one: {}", chunk.size(), describe(e));
+                    chunk.forEach(this::persistSingle);
+                }
+            }
+            chunk.clear();
+        }
+
+        private void persistSingle(IndexedRequest item) {
+            try {
+                imported(transactionTemplate.execute(status -> persistChunk(List.of(item), owner)));
+            } catch (RuntimeException e) {
+                failed(item, e);
+            }
+        }
+
+        private void imported(List<Long> ids) {
+            report.getRouteIds().addAll(ids);
+            report.setImported(report.getImported() + ids.size());
+        }
+
+        private void failed(IndexedRequest item, RuntimeException e) {
+            String cause = describe(e);
+            log.error("Failed to import route #{}: {}", item.index(), cause);
+            addError(item.index(), item.request().getRouteName(), "Ошибка сохранения: " + cause, null);
+        }
+
+        RouteImportResponse finish() {
+            report.setReceived(index);
+            log.info("Route import finished: received={}, imported={}, failed={}",
+                    report.getReceived(), report.getImported(), report.getFailed());
+            return report;
+        }
+
+        private void addError(int itemIndex, String routeName, String message, Map<String, String> fieldErrors) {
+            report.getErrors().add(RouteImportError.builder()
+                    .index(itemIndex)
+                    .routeName(routeName)
+                    .message(message)
+                    .fieldErrors(fieldErrors)
+                    .build());
+            report.setFailed(report.getFailed() + 1);
+        }
+    }
+}
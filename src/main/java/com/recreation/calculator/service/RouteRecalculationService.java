@@ -0,0 +1,271 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.dto.response.RecalculationJobResponse;
+import com.recreation.calculator.exception.ConflictException;
+import com.recreation.calculator.exception.ResourceNotFoundException;
+import com.recreation.calculator.repository.CalculationInputRepository;
+import com.recreation.calculator.repository.CalculationOutboxRepository;
+import com.recreation.calculator.repository.RecalculationJobRepository;
+import com.recreation.calculator.repository.RecalculationJobRepository.RecalculationJob;
+import com.recreation.calculator.repository.RouteBatchRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Пересчёт сохранённых расчётов после изменения формул RouteCalculationService: обрабатываются маршруты,
+ * чей расчёт получен версией формул старше RouteCalculationService.FORMULA_VERSION.
+ * Маршруты читаются порциями по возрастанию id (keyset, курсор с fetch size), считаются параллельно
+ * на отдельном ForkJoinPool и записываются JDBC-батчем upsert; в той же транзакции сдвигается контрольная
+ * точка задания. После остановки или падения узла задание продолжается с контрольной точки.
+ */
+@Service
+@Slf4j
+public class RouteRecalculationService {
+
+    private static final String RUNNING = "running";
+    private static final String STOPPED = "stopped";
+    private static final String COMPLETED = "completed";
+    private static final String FAILED = "failed";
+
+    private final RecalculationJobRepository jobRepository;
+    private final CalculationInputRepository calculationInputRepository;
+    private final CalculationOutboxRepository outboxRepository;
+    private final RouteBatchRepository routeBatchRepository;
+    private final RouteCalculationService calculationService;
+    private final RouteDetailCache routeDetailCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+
+    private final int chunkSize;
+    private final int fetchSize;
+    private final long staleAfterMs;
+    private final ForkJoinPool pool;
+    private final ExecutorService runner =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("route-recalculation-"));
+
+    // Задание, выполняемое на этом узле
+    private final AtomicReference<Progress> current = new AtomicReference<>();
+
+    public RouteRecalculationService(RecalculationJobRepository jobRepository,
+                                     CalculationInputRepository calculationInputRepository,
+                                     CalculationOutboxRepository outboxRepository,
+                                     RouteBatchRepository routeBatchRepository,
+                                     RouteCalculationService calculationService,
+                                     RouteDetailCache routeDetailCache,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.calculations.recalculation.chunk-size:1000}") int chunkSize,
+                                     @Value("${app.calculations.recalculation.fetch-size:250}") int fetchSize,
+                                     @Value("${app.calculations.recalculation.parallelism:0}") int parallelism,
+                                     @Value("${app.calculations.recalculation.stale-after-ms:60000}") long staleAfterMs) {
+        this.jobRepository = jobRepository;
+        this.calculationInputRepository = calculationInputRepository;
+        this.outboxRepository = outboxRepository;
+        this.routeBatchRepository = routeBatchRepository;
+        this.calculationService = calculationService;
+        this.routeDetailCache = routeDetailCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+        this.fetchSize = fetchSize;
+        this.staleAfterMs = staleAfterMs;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        Progress progress = current.get();
+        if (progress != null) {
+            progress.stopRequested = true;
+        }
+        runner.shutdown();
+        runner.awaitTermination(10, TimeUnit.SECONDS);
+        pool.shutdownNow();
+    }
+
+    /**
+     * Продолжает незавершённое задание с контрольной точки или запускает новое.
+     */
+    public RecalculationJobResponse start() {
+        if (current.get() != null) {
+            throw new ConflictException("Пересчёт уже выполняется");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        RecalculationJob latest = jobRepository.findLatest().orElse(null);
+
+        long jobId;
+        if (latest != null && !COMPLETED.equals(latest.status())) {
+            if (!jobRepository.claim(latest.id(), now, now.minusNanos(TimeUnit.MILLISECONDS.toNanos(staleAfterMs)))) {
+                throw new ConflictException("Пересчёт уже выполняется на другом узле");
+            }
+            jobId = latest.id();
+            log.info("Resuming recalculation job {} from route {}", jobId, latest.lastRouteId());
+        } else {
+            jobId = jobRepository.create(RouteCalculationService.FORMULA_VERSION);
+            log.info("Started recalculation job {}", jobId);
+        }
+
+        RecalculationJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalStateException("Задание пересчёта " + jobId + " не найдено"));
+
+        Progress progress = new Progress(job);
+        if (!current.compareAndSet(null, progress)) {
+            jobRepository.finish(jobId, STOPPED, null, LocalDateTime.now());
+            throw new ConflictException("Пересчёт уже выполняется");
+        }
+        runner.submit(() -> run(progress));
+
+        return toResponse(job, progress);
+    }
+
+    /**
+     * Останавливает задание после текущей порции; его можно продолжить повторным запуском.
+     */
+    public RecalculationJobResponse stop() {
+        Progress progress = current.get();
+        if (progress == null) {
+            throw new ConflictException("Пересчёт не выполняется на этом узле");
+        }
+        progress.stopRequested = true;
+        return getStatus();
+    }
+
+    public RecalculationJobResponse getStatus() {
+        RecalculationJob job = jobRepository.findLatest()
+                .orElseThrow(() -> new ResourceNotFoundException("Пересчёт ещё не запускался"));
+
+        Progress progress = current.get();
+        return toResponse(job, progress != null && progress.jobId == job.id() ? progress : null);
+    }
+
+    private void run(Progress progress) {
+        try {
+            while (!progress.stopRequested) {
+                long afterId = progress.lastRouteId;
+                List<Route> chunk = readTemplate.execute(status ->
+                        calculationInputRepository.findChunkAfter(afterId, progress.maxRouteId,
+                                RouteCalculationService.FORMULA_VERSION, chunkSize, fetchSize));
+
+                if (chunk == null || chunk.isEmpty()) {
+                    jobRepository.finish(progress.jobId, COMPLETED, null, LocalDateTime.now());
+                    log.info("Recalculation job {} completed: {} routes", progress.jobId, progress.processed);
+                    return;
+                }
+
+                List<RouteCalculation> calculations = calculate(chunk);
+                long lastRouteId = chunk.get(chunk.size() - 1).getId();
+                List<Long> routeIds = calculations.stream().map(calc -> calc.getRoute().getId()).toList();
+
+                transactionTemplate.executeWithoutResult(status -> {
+                    routeBatchRepository.upsertCalculations(calculations);
+                    // Маршруты, у которых фоновый расчёт исчерпал попытки, теперь посчитаны
+                    outboxRepository.markStatus(routeIds, Route.CALCULATION_DONE);
+                    jobRepository.checkpoint(progress.jobId, lastRouteId, chunk.size(), LocalDateTime.now());
+                    // Остальные узлы сбрасывают только пересчитанные маршруты, а не весь кэш
+                    cacheInvalidationBus.publishAll(CacheInvalidationEvent.Type.ROUTE, routeIds);
+                });
+
+                routeIds.forEach(routeDetailCache::evict);
+                progress.advance(lastRouteId, chunk.size());
+            }
+
+            jobRepository.finish(progress.jobId, STOPPED, null, LocalDateTime.now());
+            log.info("Recalculation job {} stopped at route {}", progress.jobId, progress.lastRouteId);
+        } catch (Exception e) {
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.error("Recalculation job {} failed at route {}: {}", progress.jobId, progress.lastRouteId, cause, e);
+            jobRepository.finish(progress.jobId, FAILED, cause, LocalDateTime.now());
+        } finally {
+            current.set(null);
+        }
+    }
+
+    // Маршрут с некорректными данными пропускается: его прежний расчёт остаётся как есть
+    private List<RouteCalculation> calculate(List<Route> chunk) throws InterruptedException, ExecutionException {
+        LocalDateTime now = LocalDateTime.now();
+        return pool.submit(() -> chunk.parallelStream()
+                .map(route -> {
+                    try {
+                        RouteCalculation calculation = calculationService.calculate(route);
+                        calculation.setCreatedAt(now);
+                        return calculation;
+                    } catch (RuntimeException e) {
+                        log.warn("Skipping route {} during recalculation: {}", route.getId(), e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .toList()).get();
+    }
+
+    private static RecalculationJobResponse toResponse(RecalculationJob job, Progress progress) {
+        RecalculationJobResponse response = RecalculationJobResponse.builder()
+                .id(job.id())
+                .status(progress != null ? RUNNING : job.status())
+                .processed(progress != null ? progress.processed : job.processed())
+                .total(job.total())
+                .lastRouteId(progress != null ? progress.lastRouteId : job.lastRouteId())
+                .error(job.error())
+                .startedAt(job.startedAt())
+                .updatedAt(job.updatedAt())
+                .finishedAt(job.finishedAt())
+                .build();
+
+        if (progress != null) {
+            double elapsedSeconds = (System.nanoTime() - progress.startedNanos) / 1e9;
+            if (progress.processedThisRun > 0 && elapsedSeconds > 0) {
+                double rate = progress.processedThisRun / elapsedSeconds;
+                response.setRoutesPerSecond(Math.round(rate * 10) / 10.0);
+                response.setEtaSeconds(Math.round(Math.max(0, job.total() - progress.processed) / rate));
+            }
+        }
+        return response;
+    }
+
+    // Прогресс пишет поток задания, читают запросы статуса
+    private static final class Progress {
+
+        final long jobId;
+        final long maxRouteId;
+        final long startedNanos = System.nanoTime();
+        volatile long lastRouteId;
+        volatile long processed;
+        volatile long processedThisRun;
+        volatile boolean stopRequested;
+
+        Progress(RecalculationJob job) {
+            this.jobId = job.id();
+            this.maxRouteId = job.maxRouteId();
+            this.lastRouteId = job.lastRouteId();
+            this.processed = job.processed();
+        }
+
+        void advance(long lastRouteId, int count) {
+            this.lastRouteId = lastRouteId;
+            this.processed += count;
+            this.processedThisRun += count;
+        }
+    }
+}
@@ -2,18 +2,30 @@ package com.recreation.calculator.service;
 
 import com.recreation.calculator.domain.Route;
 import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.SegmentStatistics;
 import com.recreation.calculator.domain.User;
 import com.recreation.calculator.dto.request.RouteCreateRequest;
 import com.recreation.calculator.dto.response.RouteDetailResponse;
+import com.recreation.calculator.dto.response.RouteListPage;
 import com.recreation.calculator.dto.response.RouteListResponse;
+import com.recreation.calculator.dto.response.RouteCalculationHistoryResponse;
 import com.recreation.calculator.dto.response.RouteCalculationResponse;
+import com.recreation.calculator.dto.response.RouteCalculationStatusResponse;
 import com.recreation.calculator.dto.response.RecommendationResponse;
 import com.recreation.calculator.exception.ResourceNotFoundException;
 import com.recreation.calculator.exception.UnauthorizedAccessException;
+import com.recreation.calculator.repository.CalculationHistoryRepository;
+import com.recreation.calculator.repository.RouteCalculationRepository;
 import com.recreation.calculator.repository.RouteRepository;
 import com.recreation.calculator.repository.UserRepository;
+import com.recreation.calculator.service.CreateRouteMetrics.Stage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,23 +37,87 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RouteService {
 
+    private static final String USER_FOREIGN_KEY = "fk_routes_user";
+
     private final RouteRepository routeRepository;
     private final UserRepository userRepository;
     private final RouteCalculationService calculationService;
     private final RecommendationService recommendationService;
+    private final RouteDetailCache routeDetailCache;
+    private final RouteCalculationRepository routeCalculationRepository;
+    private final CalculationPipeline calculationPipeline;
+    private final CalculationHistoryRepository calculationHistoryRepository;
+    private final CreateRouteMetrics metrics;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${app.routes.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.routes.page.max-size:200}")
+    private int maxPageSize;
+
+    @Value("${app.routes.history.max-size:100}")
+    private int maxHistorySize;
 
     @Transactional
-    public RouteDetailResponse createRoute(RouteCreateRequest request, String userEmail) {
-        log.info("Creating route '{}' for user: {}", request.getRouteName(), userEmail);
+    public RouteDetailResponse createRoute(RouteCreateRequest request, Long userId) {
+        log.debug("Creating route '{}' for user: {}", request.getRouteName(), userId);
+
+        // Ссылка без select: пользователь уже определён по токену, удалённого отсекает FK при вставке
+        User user = metrics.time(Stage.USER_LOOKUP, () -> userRepository.getReferenceById(userId));
+
+        Route route = toEntity(request, user);
+
+        if (calculationPipeline.isAsync()) {
+            // Расчёт выполнит воркер; строка outbox коммитится вместе с маршрутом
+            route.setCalculationStatus(Route.CALCULATION_PENDING);
+            Route savedRoute = metrics.time(Stage.ROUTE_INSERT, () -> insertRoute(route));
+            calculationPipeline.enqueue(List.of(savedRoute.getId()));
+
+            log.debug("Route '{}' created with ID: {}, calculation queued", savedRoute.getRouteName(), savedRoute.getId());
+            return timedDetailResponse(savedRoute);
+        }
+
+        // 1. Сохранить Route
+        Route savedRoute = metrics.time(Stage.ROUTE_INSERT, () -> insertRoute(route));
+
+        // 2. Рассчитать и сохранить расчёт
+        RouteCalculation calculation = metrics.time(Stage.CALCULATION, () -> calculationService.calculate(savedRoute));
+        metrics.time(Stage.CALCULATION_INSERT, () -> routeCalculationRepository.save(calculation));
 
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        // 3. Установить расчет в Route
+        savedRoute.setCalculation(calculation);
 
-        Route route = Route.builder()
+        log.debug("Route '{}' successfully created with ID: {}", savedRoute.getRouteName(), savedRoute.getId());
+
+        return timedDetailResponse(savedRoute);
+    }
+
+    private Route insertRoute(Route route) {
+        try {
+            return routeRepository.save(route);
+        } catch (DataIntegrityViolationException e) {
+            // Токен пережил удаление пользователя: отвечаем как resolveUserId, а не 500
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && USER_FOREIGN_KEY.equalsIgnoreCase(violation.getConstraintName())) {
+                throw new ResourceNotFoundException("Пользователь не найден");
+            }
+            throw e;
+        }
+    }
+
+    private RouteDetailResponse timedDetailResponse(Route route) {
+        RouteDetailResponse response = metrics.time(Stage.MAPPING, () -> mapWithoutRecommendations(route));
+        response.setRecommendations(metrics.time(Stage.RECOMMENDATIONS, () -> findRecommendations(route)));
+        return response;
+    }
+
+    static Route toEntity(RouteCreateRequest request, User user) {
+        return Route.builder()
                 .user(user)
                 .routeName(request.getRouteName())
                 .routeType(request.getRouteType())
-                .routeTimeType(request.getRouteTimeType())  // ← ДОБАВИТЬ если его нет
+                .routeTimeType(request.getRouteTimeType())
                 .tSut(request.getTSut())
                 .tSezon(request.getTSezon())
                 .gs(request.getGs())
@@ -50,56 +126,85 @@ public class RouteService {
                 .dtArray(request.getDtArray())
                 .dgArray(request.getDgArray())
                 .vArray(request.getVArray())
+                .segmentStatistics(SegmentStatistics.of(request.getTdArray(), request.getDtArray(),
+                        request.getDgArray(), request.getVArray()))
                 .ecologicalFactors(request.getEcologicalFactors() != null ? request.getEcologicalFactors() : List.of())
                 .managementFactors(request.getManagementFactors() != null ? request.getManagementFactors() : List.of())
                 .build();
+    }
 
-        // 1. Сохранить Route
-        Route savedRoute = routeRepository.save(route);
-
-        // 2. ПРАВИЛЬНО: Передать Route в calculationService
-        RouteCalculation calculation = calculationService.saveCalculation(savedRoute);  // ✅
-
-        // 3. Установить расчет в Route
-        savedRoute.setCalculation(calculation);
+    @Transactional(readOnly = true)
+    public RouteListPage getUserRoutes(Long userId, String cursor, Integer limit) {
+        log.debug("Fetching routes for user: {}", userId);
+
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        // Берём на один элемент больше, чтобы понять, есть ли следующая страница
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<RouteListResponse> routes;
+        if (cursor == null || cursor.isBlank()) {
+            routes = routeRepository.findListPage(userId, pageable);
+        } else {
+            RouteCursor position = RouteCursor.decode(cursor);
+            routes = routeRepository.findListPageAfter(userId, position.createdAt(), position.id(), pageable);
+        }
 
-        log.info("Route '{}' successfully created with ID: {}", savedRoute.getRouteName(), savedRoute.getId());
+        String nextCursor = null;
+        if (routes.size() > pageSize) {
+            routes = routes.subList(0, pageSize);
+            RouteListResponse last = routes.get(pageSize - 1);
+            nextCursor = new RouteCursor(last.getCreatedAt(), last.getId()).encode();
+        }
 
-        return mapToDetailResponse(savedRoute);
+        return RouteListPage.builder()
+                .items(routes)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Transactional(readOnly = true)
-    public List<RouteListResponse> getUserRoutes(String userEmail) {
-        log.info("Fetching routes for user: {}", userEmail);
+    public RouteDetailResponse getRouteById(Long routeId, Long userId) {
+        log.debug("Fetching route with ID: {} for user: {}", routeId, userId);
 
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        Route route = routeRepository.findByIdAndUserIdWithCalculation(routeId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Маршрут не найден"));
 
-        List<Route> routes = routeRepository.findByUserIdOrderByCreatedAtDesc(user.getId());
+        if (!route.getUser().getId().equals(userId)) {
+            throw new UnauthorizedAccessException("Доступ запрещён");
+        }
 
-        return routes.stream()
-                .map(this::mapToListResponse)
-                .collect(Collectors.toList());
+        return mapToDetailResponse(route);
     }
 
-    @Transactional(readOnly = true)
-    public RouteDetailResponse getRouteById(Long routeId, String userEmail) {
-        log.info("Fetching route with ID: {} for user: {}", routeId, userEmail);
+    /**
+     * Статус расчёта маршрута; при pending ждёт готовности до waitMs миллисекунд.
+     */
+    public RouteCalculationStatusResponse getCalculationStatus(Long routeId, Long userId, long waitMs) {
+        String status = calculationPipeline.awaitStatus(routeId, userId, waitMs);
+
+        RouteCalculationStatusResponse response = RouteCalculationStatusResponse.builder()
+                .routeId(routeId)
+                .status(status)
+                .build();
 
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        if (Route.CALCULATION_DONE.equals(status)) {
+            routeCalculationRepository.findByRouteId(routeId)
+                    .ifPresent(calc -> response.setCalculation(mapToCalculationResponse(calc)));
+        }
 
-        Route route = routeRepository.findByIdAndUserIdWithCalculation(routeId, user.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Маршрут не найден"));
+        return response;
+    }
 
-        if (!route.getUser().getId().equals(user.getId())) {
-            throw new UnauthorizedAccessException("Доступ запрещён");
+    @Transactional(readOnly = true)
+    public List<RouteCalculationHistoryResponse> getCalculationHistory(Long routeId, Long userId) {
+        if (!routeRepository.existsByIdAndUserId(routeId, userId)) {
+            throw new ResourceNotFoundException("Маршрут не найден");
         }
 
-        return mapToDetailResponse(route);
+        return calculationHistoryRepository.findByRouteId(routeId, maxHistorySize);
     }
 
-    private RouteListResponse mapToListResponse(Route route) {
+    RouteListResponse mapToListResponse(Route route) {
         RouteListResponse response = RouteListResponse.builder()
                 .id(route.getId())
                 .routeName(route.getRouteName())
@@ -108,6 +213,12 @@ public class RouteService {
                 .createdAt(route.getCreatedAt())
                 .build();
 
+        if (route.getSegmentStatistics() != null) {
+            response.setSegmentCount(route.getSegmentStatistics().getSegmentCount());
+            response.setTotalTd(route.getSegmentStatistics().getTdSum());
+            response.setTotalDt(route.getSegmentStatistics().getDtSum());
+        }
+
         if (route.getCalculation() != null) {
             response.setBcc(route.getCalculation().getBcc());
             response.setPcc(route.getCalculation().getPcc());
@@ -117,7 +228,13 @@ public class RouteService {
         return response;
     }
 
-    private RouteDetailResponse mapToDetailResponse(Route route) {
+    RouteDetailResponse mapToDetailResponse(Route route) {
+        RouteDetailResponse response = mapWithoutRecommendations(route);
+        response.setRecommendations(findRecommendations(route));
+        return response;
+    }
+
+    private RouteDetailResponse mapWithoutRecommendations(Route route) {
         RouteDetailResponse response = RouteDetailResponse.builder()
                 .id(route.getId())
                 .routeName(route.getRouteName())
@@ -133,45 +250,45 @@ public class RouteService {
                 .vArray(route.getVArray())
                 .ecologicalFactors(route.getEcologicalFactors())
                 .managementFactors(route.getManagementFactors())
+                .calculationStatus(route.getCalculationStatus())
                 .createdAt(route.getCreatedAt())
                 .updatedAt(route.getUpdatedAt())
                 .build();
 
         if (route.getCalculation() != null) {
-            RouteCalculation calc = route.getCalculation();
-            response.setCalculation(RouteCalculationResponse.builder()
-                    .id(calc.getId())
-                    .cfn(calc.getCfn())
-                    .mCoefficient(calc.getMCoefficient())
-                    .bcc(calc.getBcc())
-                    .pcc(calc.getPcc())
-                    .rcc(calc.getRcc())
-                    .maxGroups(calc.getMaxGroups())
-                    .createdAt(calc.getCreatedAt())
-                    .build());
+            response.setCalculation(mapToCalculationResponse(route.getCalculation()));
         }
 
-        List<RecommendationResponse> recommendations = recommendationService
-                .getRecommendationsForRoute(route.getEcologicalFactors(), route.getManagementFactors());
-        response.setRecommendations(recommendations);
-
         return response;
     }
 
-    @Transactional
-    public void deleteRoute(Long routeId, String userEmail) {
-        // 1. Проверить, что маршрут принадлежит пользователю
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+    private List<RecommendationResponse> findRecommendations(Route route) {
+        return recommendationService
+                .getRecommendationsForRoute(route.getEcologicalFactors(), route.getManagementFactors());
+    }
 
-        Route route = routeRepository.findByIdAndUserIdWithCalculation(routeId, user.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Маршрут не найден"));
+    static RouteCalculationResponse mapToCalculationResponse(RouteCalculation calc) {
+        return RouteCalculationResponse.builder()
+                .id(calc.getId())
+                .cfn(calc.getCfn())
+                .mCoefficient(calc.getMCoefficient())
+                .bcc(calc.getBcc())
+                .pcc(calc.getPcc())
+                .rcc(calc.getRcc())
+                .maxGroups(calc.getMaxGroups())
+                .formulaVersion(calc.getFormulaVersion())
+                .createdAt(calc.getCreatedAt())
+                .build();
+    }
 
-        if (!route.getUser().getId().equals(user.getId())) {
-            throw new UnauthorizedAccessException("Доступ запрещён");
+    @Transactional
+    public void deleteRoute(Long routeId, Long userId) {
+        // Владелец проверяется в самом delete, маршрут не загружается; расчёт удаляется ON DELETE CASCADE
+        if (routeRepository.deleteByIdAndUserId(routeId, userId) == 0) {
+            throw new ResourceNotFoundException("Маршрут не найден");
         }
 
-        // 2. Удалить маршрут (расчёт удалится каскадно)
-        routeRepository.delete(route);
+        routeDetailCache.evictAfterCommit(routeId);
+        cacheInvalidationBus.publish(CacheInvalidationEvent.Type.ROUTE, routeId);
     }
 }
@@ -0,0 +1,73 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.dto.request.RouteScenarioRequest;
+import com.recreation.calculator.dto.response.RouteScenarioResult;
+import com.recreation.calculator.dto.response.RouteSimulationResponse;
+import com.recreation.calculator.exception.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Расчёт ёмкости для набора вариантов параметров без обращения к БД:
+ * маршруты собираются в памяти и передаются в ту же формулу, что и при сохранении.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteSimulationService {
+
+    private final RouteCalculationService calculationService;
+
+    @Value("${app.routes.simulation.max-scenarios:1000}")
+    private int maxScenarios;
+
+    public RouteSimulationResponse simulate(List<RouteScenarioRequest> scenarios) {
+        if (scenarios.size() > maxScenarios) {
+            throw new BadRequestException("Слишком много вариантов: " + scenarios.size()
+                    + ", допустимо не более " + maxScenarios);
+        }
+
+        log.debug("Simulating {} route scenarios", scenarios.size());
+
+        List<RouteScenarioResult> results = new ArrayList<>(scenarios.size());
+        for (int i = 0; i < scenarios.size(); i++) {
+            RouteScenarioRequest scenario = scenarios.get(i);
+            RouteCalculation calculation = calculationService.calculate(toRoute(scenario));
+
+            results.add(RouteScenarioResult.builder()
+                    .index(i)
+                    .label(scenario.getLabel())
+                    .cfn(calculation.getCfn())
+                    .mCoefficient(calculation.getMCoefficient())
+                    .bcc(calculation.getBcc())
+                    .pcc(calculation.getPcc())
+                    .rcc(calculation.getRcc())
+                    .maxGroups(calculation.getMaxGroups())
+                    .build());
+        }
+
+        return RouteSimulationResponse.builder()
+                .results(results)
+                .build();
+    }
+
+    private static Route toRoute(RouteScenarioRequest scenario) {
+        return Route.builder()
+                .routeTimeType(scenario.getRouteTimeType())
+                .tSut(scenario.getTSut())
+                .tSezon(scenario.getTSezon())
+                .gs(scenario.getGs())
+                .tl(scenario.getTl())
+                .tdArray(scenario.getTdArray())
+                .ecologicalFactors(scenario.getEcologicalFactors() != null ? scenario.getEcologicalFactors() : List.of())
+                .managementFactors(scenario.getManagementFactors() != null ? scenario.getManagementFactors() : List.of())
+                .build();
+    }
+}
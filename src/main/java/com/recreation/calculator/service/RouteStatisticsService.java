@@ -0,0 +1,64 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.dto.response.RouteStatisticsBucket;
+import com.recreation.calculator.dto.response.RouteStatisticsGroup;
+import com.recreation.calculator.dto.response.RouteStatisticsResponse;
+import com.recreation.calculator.repository.RouteStatisticsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сводная статистика по маршрутам пользователя. Агрегаты и перцентили считает Postgres,
+ * транзакция только на чтение, поэтому при включённом профиле replica запрос уходит на реплику.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteStatisticsService {
+
+    // CFN ограничен [0.1, 1.0]; последний интервал [1.0, 1.1) содержит только 1.0
+    private static final BigDecimal CFN_FROM = new BigDecimal("0.1");
+    private static final BigDecimal CFN_STEP = new BigDecimal("0.1");
+    private static final int CFN_BUCKETS = 10;
+
+    private final RouteStatisticsRepository routeStatisticsRepository;
+
+    @Transactional(readOnly = true)
+    public RouteStatisticsResponse getStatistics(Long userId) {
+        log.debug("Computing route statistics for user: {}", userId);
+
+        List<RouteStatisticsGroup> rows = routeStatisticsRepository.findGroups(userId);
+
+        return RouteStatisticsResponse.builder()
+                .total(rows.get(0))
+                .groups(rows.subList(1, rows.size()))
+                .cfnHistogram(cfnHistogram(userId))
+                .build();
+    }
+
+    private List<RouteStatisticsBucket> cfnHistogram(Long userId) {
+        BigDecimal to = CFN_FROM.add(CFN_STEP.multiply(BigDecimal.valueOf(CFN_BUCKETS)));
+        long[] counts = routeStatisticsRepository.findCfnHistogram(userId, CFN_FROM, to, CFN_BUCKETS);
+
+        List<RouteStatisticsBucket> histogram = new ArrayList<>(CFN_BUCKETS);
+        for (int bucket = 1; bucket <= CFN_BUCKETS; bucket++) {
+            BigDecimal from = CFN_FROM.add(CFN_STEP.multiply(BigDecimal.valueOf(bucket - 1)));
+            // Значения вне диапазона не ожидаются, но не теряются: попадают в крайние интервалы
+            long count = counts[bucket]
+                    + (bucket == 1 ? counts[0] : 0)
+                    + (bucket == CFN_BUCKETS ? counts[CFN_BUCKETS + 1] : 0);
+            histogram.add(RouteStatisticsBucket.builder()
+                    .from(from)
+                    .to(from.add(CFN_STEP))
+                    .count(count)
+                    .build());
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,349 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.dto.request.DecimalRangeRequest;
+import com.recreation.calculator.dto.request.IntegerRangeRequest;
+import com.recreation.calculator.dto.request.RouteSweepRequest;
+import com.recreation.calculator.dto.response.RouteSweepPoint;
+import com.recreation.calculator.dto.response.RouteSweepSummary;
+import com.recreation.calculator.exception.BadRequestException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перебор сетки параметров маршрута без обращения к БД.
+ * Среднее T_d и коэффициенты CFN/M для каждого набора факторов считаются один раз на запрос,
+ * сами варианты — через CapacityKernel пачками на отдельном ForkJoinPool.
+ * Пачки пишутся в ответ в порядке сетки по мере готовности, в полёте держится ограниченное число пачек.
+ */
+@Service
+@Slf4j
+public class RouteSweepService {
+
+    // Не больше 2^16 подмножеств факторов
+    private static final int MAX_SUBSET_FACTORS = 16;
+
+    private static final BigDecimal MAX_T_SUT = new BigDecimal("24.0");
+
+    private final RouteCalculationService calculationService;
+    private final ObjectMapper objectMapper;
+    private final long maxPoints;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public RouteSweepService(RouteCalculationService calculationService,
+                             ObjectMapper objectMapper,
+                             @Value("${app.routes.sweep.max-points:200000}") long maxPoints,
+                             @Value("${app.routes.sweep.chunk-size:2048}") int chunkSize,
+                             @Value("${app.routes.sweep.parallelism:0}") int parallelism) {
+        this.calculationService = calculationService;
+        this.objectMapper = objectMapper;
+        this.maxPoints = maxPoints;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Проверяет запрос и раскрывает диапазоны. Вызывается до начала ответа,
+     * чтобы ошибки возвращались обычным 400.
+     */
+    public Plan plan(RouteSweepRequest request) {
+        boolean fixedTime = "fixed_time".equals(request.getRouteTimeType());
+
+        Integer[] gs = integers(request.getGs(), "gs");
+        BigDecimal[] tSut = new BigDecimal[]{null};
+        Integer[] tSezon = new Integer[]{null};
+        Integer[] tl = new Integer[]{null};
+        int[] maxGroups = new int[1];
+
+        if (fixedTime) {
+            if (request.getTSut() == null) {
+                throw new BadRequestException("Для fixed_time обязателен диапазон tSut");
+            }
+            tSut = decimals(request.getTSut(), "tSut");
+            if (tSut[tSut.length - 1].compareTo(MAX_T_SUT) > 0) {
+                throw new BadRequestException("Время доступности не должно превышать 24 часа");
+            }
+            long avgTd = calculationService.calculateAverageTd(request.getTdArray());
+            if (avgTd <= 0) {
+                throw new BadRequestException("Среднее время прохождения участков должно быть больше 0");
+            }
+            // max_groups зависит только от tSut: считаем заранее, с BigDecimal-запасом для больших scale,
+            // чтобы переполнение не обрывало уже начатый ответ
+            maxGroups = new int[tSut.length];
+            for (int i = 0; i < tSut.length; i++) {
+                maxGroups[i] = calculationService.calculateMaxGroups(tSut[i], avgTd);
+            }
+        } else {
+            if (request.getTSezon() == null || request.getTl() == null) {
+                throw new BadRequestException("Для unlimited_time обязательны диапазоны tSezon и tl");
+            }
+            tSezon = integers(request.getTSezon(), "tSezon");
+            tl = integers(request.getTl(), "tl");
+        }
+
+        List<List<Integer>> ecological = factorSets(request.getEcologicalFactors(),
+                request.isEcologicalFactorSubsets(), "ecologicalFactors");
+        List<List<Integer>> management = factorSets(request.getManagementFactors(),
+                request.isManagementFactorSubsets(), "managementFactors");
+
+        long size;
+        try {
+            size = Math.multiplyExact(Math.multiplyExact(Math.multiplyExact(gs.length, (long) tSut.length),
+                    Math.multiplyExact(tSezon.length, (long) tl.length)),
+                    Math.multiplyExact(ecological.size(), (long) management.size()));
+        } catch (ArithmeticException e) {
+            size = Long.MAX_VALUE;
+        }
+        if (size > maxPoints) {
+            throw new BadRequestException("Слишком большая сетка: " + size + " вариантов, допустимо не более " + maxPoints);
+        }
+
+        BigDecimal[] cfn = new BigDecimal[ecological.size()];
+        long[] cfnHundredths = new long[cfn.length];
+        for (int i = 0; i < cfn.length; i++) {
+            cfn[i] = calculationService.calculateCfn(ecological.get(i));
+            cfnHundredths[i] = RouteCalculationService.toHundredths(cfn[i]);
+        }
+
+        BigDecimal[] m = new BigDecimal[management.size()];
+        long[] mHundredths = new long[m.length];
+        for (int i = 0; i < m.length; i++) {
+            m[i] = calculationService.calculateMCoefficient(management.get(i));
+            mHundredths[i] = RouteCalculationService.toHundredths(m[i]);
+        }
+
+        return new Plan(fixedTime, size, maxGroups, gs, tSut, tSezon, tl,
+                ecological, cfn, cfnHundredths, management, m, mHundredths);
+    }
+
+    /**
+     * Считает все варианты плана и пишет их в out строками NDJSON, последней строкой — сводку.
+     */
+    public void stream(Plan plan, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        log.debug("Starting route sweep: {} points, parallelism {}", plan.size(), pool.getParallelism());
+
+        Map<Integer, RouteSweepPoint> frontier = new TreeMap<>();
+        Deque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+        int maxInFlight = pool.getParallelism() * 2;
+        long next = 0;
+
+        try {
+            while (next < plan.size() || !inFlight.isEmpty()) {
+                while (next < plan.size() && inFlight.size() < maxInFlight) {
+                    long from = next;
+                    long to = Math.min(plan.size(), from + chunkSize);
+                    inFlight.add(pool.submit(() -> evaluate(plan, from, to)));
+                    next = to;
+                }
+
+                Chunk chunk = await(inFlight.poll());
+                out.write(chunk.body());
+                out.flush();
+                for (RouteSweepPoint best : chunk.best().values()) {
+                    mergeFrontier(frontier, best);
+                }
+            }
+        } finally {
+            // Клиент отключился или пачка упала — остальные пачки не нужны
+            inFlight.forEach(task -> task.cancel(true));
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        RouteSweepSummary summary = RouteSweepSummary.builder()
+                .evaluated(plan.size())
+                .elapsedMs(elapsedMs)
+                .frontier(new ArrayList<>(frontier.values()))
+                .build();
+        out.write(objectMapper.writeValueAsBytes(summary));
+        out.write('\n');
+        out.flush();
+
+        log.debug("Route sweep finished: {} points in {} ms", plan.size(), elapsedMs);
+    }
+
+    private Chunk evaluate(Plan plan, long from, long to) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream((int) (to - from) * 256);
+        Map<Integer, RouteSweepPoint> best = new HashMap<>();
+
+        try {
+            for (long index = from; index < to; index++) {
+                RouteSweepPoint point = plan.evaluate(index);
+                objectMapper.writeValue(body, point);
+                body.write('\n');
+                mergeFrontier(best, point);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Chunk(body.toByteArray(), best);
+    }
+
+    // При равной ёмкости остаётся вариант с меньшим индексом, поэтому фронтир не зависит от порядка пачек
+    private static void mergeFrontier(Map<Integer, RouteSweepPoint> frontier, RouteSweepPoint point) {
+        RouteSweepPoint current = frontier.get(point.getGs());
+        if (current == null || capacity(point) > capacity(current)
+                || (capacity(point) == capacity(current) && point.getIndex() < current.getIndex())) {
+            frontier.put(point.getGs(), point);
+        }
+    }
+
+    private static int capacity(RouteSweepPoint point) {
+        Integer value = point.getRcc() != null ? point.getRcc() : point.getBcc();
+        return value != null ? value : -1;
+    }
+
+    private static Chunk await(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Перебор прерван");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка расчёта варианта: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Integer[] integers(IntegerRangeRequest range, String name) {
+        int from = range.getFrom();
+        int to = range.getTo() != null ? range.getTo() : from;
+        int step = range.getStep() != null ? range.getStep() : 1;
+        if (to < from) {
+            throw new BadRequestException("Конец диапазона " + name + " меньше начала");
+        }
+
+        long count = ((long) to - from) / step + 1;
+        if (count > maxPoints) {
+            throw new BadRequestException("Слишком большой диапазон " + name);
+        }
+
+        Integer[] values = new Integer[(int) count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i * step;
+        }
+        return values;
+    }
+
+    private BigDecimal[] decimals(DecimalRangeRequest range, String name) {
+        BigDecimal from = range.getFrom();
+        BigDecimal to = range.getTo() != null ? range.getTo() : from;
+        BigDecimal step = range.getStep() != null ? range.getStep() : BigDecimal.ONE;
+        if (to.compareTo(from) < 0) {
+            throw new BadRequestException("Конец диапазона " + name + " меньше начала");
+        }
+
+        BigDecimal count = to.subtract(from).divideToIntegralValue(step).add(BigDecimal.ONE);
+        if (count.compareTo(BigDecimal.valueOf(maxPoints)) > 0) {
+            throw new BadRequestException("Слишком большой диапазон " + name);
+        }
+
+        BigDecimal[] values = new BigDecimal[count.intValueExact()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from.add(step.multiply(BigDecimal.valueOf(i)));
+        }
+        return values;
+    }
+
+    private static List<List<Integer>> factorSets(List<Integer> factors, boolean subsets, String name) {
+        List<Integer> base = factors != null ? factors : List.of();
+        if (!subsets) {
+            return List.of(base);
+        }
+        if (base.size() > MAX_SUBSET_FACTORS) {
+            throw new BadRequestException("Для перебора подмножеств " + name
+                    + " допустимо не более " + MAX_SUBSET_FACTORS + " факторов");
+        }
+
+        List<List<Integer>> result = new ArrayList<>(1 << base.size());
+        for (int mask = 0; mask < (1 << base.size()); mask++) {
+            List<Integer> subset = new ArrayList<>(Integer.bitCount(mask));
+            for (int bit = 0; bit < base.size(); bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    subset.add(base.get(bit));
+                }
+            }
+            result.add(List.copyOf(subset));
+        }
+        return result;
+    }
+
+    private record Chunk(byte[] body, Map<Integer, RouteSweepPoint> best) {
+    }
+
+    /**
+     * Раскрытая сетка: индекс варианта — смешанная система счисления
+     * по измерениям gs, tSut, tSezon, tl, экологические и управленческие факторы (последние меняются быстрее всех).
+     */
+    public record Plan(boolean fixedTime, long size, int[] maxGroups,
+                       Integer[] gs, BigDecimal[] tSut, Integer[] tSezon, Integer[] tl,
+                       List<List<Integer>> ecological, BigDecimal[] cfn, long[] cfnHundredths,
+                       List<List<Integer>> management, BigDecimal[] m, long[] mHundredths) {
+
+        RouteSweepPoint evaluate(long index) {
+            long rest = index;
+            int mi = (int) (rest % management.size());
+            rest /= management.size();
+            int ei = (int) (rest % ecological.size());
+            rest /= ecological.size();
+            int tli = (int) (rest % tl.length);
+            rest /= tl.length;
+            int si = (int) (rest % tSezon.length);
+            rest /= tSezon.length;
+            int ti = (int) (rest % tSut.length);
+            rest /= tSut.length;
+            int gi = (int) rest;
+
+            RouteSweepPoint point = RouteSweepPoint.builder()
+                    .index(index)
+                    .gs(gs[gi])
+                    .tSut(tSut[ti])
+                    .tSezon(tSezon[si])
+                    .tl(tl[tli])
+                    .ecologicalFactors(ecological.get(ei))
+                    .managementFactors(management.get(mi))
+                    .cfn(cfn[ei])
+                    .mCoefficient(m[mi])
+                    .build();
+
+            if (fixedTime) {
+                int bcc = CapacityKernel.bcc(maxGroups[ti], gs[gi]);
+                int pcc = CapacityKernel.pcc(bcc, cfnHundredths[ei]);
+                point.setMaxGroups(maxGroups[ti]);
+                point.setBcc(bcc);
+                point.setPcc(pcc);
+                point.setRcc(CapacityKernel.rcc(pcc, mHundredths[mi]));
+            } else {
+                point.setBcc(CapacityKernel.unlimitedBcc(tSezon[si], tl[tli], gs[gi]));
+            }
+            return point;
+        }
+    }
+}
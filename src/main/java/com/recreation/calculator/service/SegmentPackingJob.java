@@ -0,0 +1,82 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.repository.RouteBatchRepository;
+import com.recreation.calculator.repository.RouteBatchRepository.PackedBatch;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перенос массивов участков существующих маршрутов из JSONB в bytea (формат SegmentArrayCodec).
+ * Включается явно (app.routes.segment-packing.enabled=true) и после старта проходит таблицу пачками по id,
+ * каждая пачка — в своей транзакции. Упакованные и неупаковываемые массивы пропускаются, поэтому
+ * прерванный перенос продолжается при следующем запуске. Формат новых маршрутов задаёт app.routes.segment-storage.
+ */
+@Service
+@ConditionalOnProperty(name = "app.routes.segment-packing.enabled", havingValue = "true")
+@Slf4j
+public class SegmentPackingJob {
+
+    private final RouteBatchRepository routeBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private volatile boolean running;
+    private ExecutorService executor;
+
+    public SegmentPackingJob(RouteBatchRepository routeBatchRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${app.routes.segment-packing.batch-size:500}") int batchSize) {
+        this.routeBatchRepository = routeBatchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("segment-packing-"));
+        executor.submit(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    void run() {
+        log.info("Segment packing started (batch size {})", batchSize);
+        long lastId = 0;
+        long packedRoutes = 0;
+        try {
+            while (running) {
+                long afterId = lastId;
+                PackedBatch batch = transactionTemplate.execute(status ->
+                        routeBatchRepository.packSegments(afterId, batchSize));
+                if (batch.lastId() == afterId) {
+                    log.info("Segment packing finished: {} routes packed", packedRoutes);
+                    return;
+                }
+                lastId = batch.lastId();
+                packedRoutes += batch.packedRoutes();
+            }
+            log.info("Segment packing stopped after route {}: {} routes packed", lastId, packedRoutes);
+        } catch (RuntimeException e) {
+            log.error("Segment packing failed after route {}: {}", lastId, e.getMessage(), e);
+        }
+    }
+}
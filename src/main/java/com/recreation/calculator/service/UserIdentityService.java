@@ -0,0 +1,86 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.cache.ExpiringCache;
+import com.recreation.calculator.domain.User;
+import com.recreation.calculator.exception.ResourceNotFoundException;
+import com.recreation.calculator.repository.UserRepository;
+import com.recreation.calculator.security.JwtTokenProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Определение id пользователя по email для токенов без claim uid.
+ * Результат кэшируется на короткое время, смена email сбрасывает запись вместе с проверенными токенами
+ * этого email в JwtTokenProvider.
+ */
+@Service
+@Slf4j
+public class UserIdentityService {
+
+    private final UserRepository userRepository;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final ExpiringCache<String, Long> userIds;
+    private final long ttlMs;
+
+    public UserIdentityService(UserRepository userRepository,
+                               CacheInvalidationBus cacheInvalidationBus,
+                               JwtTokenProvider jwtTokenProvider,
+                               @Value("${app.users.id-cache.max-size:10000}") int maxSize,
+                               @Value("${app.users.id-cache.ttl-ms:300000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userIds = new ExpiringCache<>(maxSize);
+        this.ttlMs = ttlMs;
+    }
+
+    public Long resolveUserId(String email) {
+        Long cached = userIds.get(email);
+        if (cached != null) {
+            return cached;
+        }
+
+        Long userId = userRepository.findByEmail(email)
+                .map(User::getId)
+                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
+        userIds.put(email, userId, System.currentTimeMillis() + ttlMs);
+
+        return userId;
+    }
+
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationEvent event) {
+        if (event.type() == CacheInvalidationEvent.Type.ALL) {
+            userIds.clear();
+            jwtTokenProvider.invalidateAll();
+        } else if (event.type() == CacheInvalidationEvent.Type.USER) {
+            invalidate(event.key());
+        }
+    }
+
+    /**
+     * Сбрасывает запись сразу и после коммита текущей транзакции, на остальных узлах — через CacheInvalidationBus.
+     */
+    public void invalidateAfterCommit(String email) {
+        invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(email);
+                }
+            });
+        }
+        cacheInvalidationBus.publish(CacheInvalidationEvent.Type.USER, email);
+    }
+
+    private void invalidate(String email) {
+        userIds.invalidate(email);
+        jwtTokenProvider.invalidateSubject(email);
+    }
+}
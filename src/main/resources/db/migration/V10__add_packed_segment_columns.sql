@@ -0,0 +1,9 @@
+-- V10__add_packed_segment_columns.sql
+
+-- Упакованные массивы участков (формат SegmentArrayCodec). Колонки пустые: новые маршруты пишутся в них
+-- только при app.routes.segment-storage=packed, существующие переносит SegmentPackingJob
+ALTER TABLE routes
+    ADD COLUMN td_packed BYTEA,
+    ADD COLUMN dt_packed BYTEA,
+    ADD COLUMN dg_packed BYTEA,
+    ADD COLUMN v_packed BYTEA;
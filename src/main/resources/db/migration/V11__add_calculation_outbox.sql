@@ -0,0 +1,19 @@
+-- V11__add_calculation_outbox.sql
+
+-- Статус расчёта маршрута: pending — ждёт фонового расчёта, done — расчёт сохранён, failed — попытки исчерпаны
+ALTER TABLE routes
+ADD COLUMN calculation_status VARCHAR(20) NOT NULL DEFAULT 'done'
+CHECK (calculation_status IN ('pending', 'done', 'failed'));
+
+-- Transactional outbox: строка добавляется в одной транзакции с маршрутом,
+-- воркеры забирают её через SELECT ... FOR UPDATE SKIP LOCKED
+CREATE TABLE calculation_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    route_id BIGINT NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_outbox_route FOREIGN KEY (route_id) REFERENCES routes(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_calculation_outbox_route_id ON calculation_outbox(route_id);
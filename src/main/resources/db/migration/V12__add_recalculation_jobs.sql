@@ -0,0 +1,17 @@
+-- V12__add_recalculation_jobs.sql
+
+-- Пересчёт сохранённых расчётов после изменения формул.
+-- last_route_id — контрольная точка: маршруты с id <= last_route_id уже пересчитаны,
+-- max_route_id — верхняя граница, зафиксированная при запуске (новые маршруты считаются по новым формулам)
+CREATE TABLE recalculation_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('running', 'stopped', 'completed', 'failed')),
+    last_route_id BIGINT NOT NULL DEFAULT 0,
+    max_route_id BIGINT NOT NULL,
+    processed BIGINT NOT NULL DEFAULT 0,
+    total BIGINT NOT NULL,
+    error TEXT,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP
+);
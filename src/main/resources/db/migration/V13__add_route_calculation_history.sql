@@ -0,0 +1,68 @@
+-- V13__add_route_calculation_history.sql
+
+-- Версия формул, по которым получен текущий расчёт
+ALTER TABLE route_calculations
+ADD COLUMN formula_version INTEGER NOT NULL DEFAULT 1;
+
+-- История расчётов: только добавление, секционирование по хэшу route_id —
+-- история одного маршрута всегда лежит в одной секции.
+-- Текущий расчёт по-прежнему одна строка route_calculations с уникальным route_id,
+-- поэтому чтение маршрута с расчётом остаётся одним индексным поиском
+CREATE TABLE route_calculation_history (
+    id BIGSERIAL,
+    route_id BIGINT NOT NULL,
+    formula_version INTEGER NOT NULL,
+    cfn DECIMAL(3,2) NOT NULL,
+    m_coefficient DECIMAL(3,2) NOT NULL,
+    bcc INTEGER,
+    pcc INTEGER,
+    rcc INTEGER,
+    max_groups INTEGER,
+    calculated_at TIMESTAMP NOT NULL,
+    recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (route_id, id),
+    CONSTRAINT fk_calculation_history_route FOREIGN KEY (route_id) REFERENCES routes(id) ON DELETE CASCADE
+) PARTITION BY HASH (route_id);
+
+CREATE TABLE route_calculation_history_p0 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 0);
+CREATE TABLE route_calculation_history_p1 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 1);
+CREATE TABLE route_calculation_history_p2 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 2);
+CREATE TABLE route_calculation_history_p3 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 3);
+CREATE TABLE route_calculation_history_p4 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 4);
+CREATE TABLE route_calculation_history_p5 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 5);
+CREATE TABLE route_calculation_history_p6 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 6);
+CREATE TABLE route_calculation_history_p7 PARTITION OF route_calculation_history FOR VALUES WITH (MODULUS 8, REMAINDER 7);
+
+-- Каждая запись текущего расчёта (JPA, JDBC-батч, upsert пересчёта) попадает в историю.
+-- Повторная запись тех же результатов той же версии формул историю не дублирует
+CREATE FUNCTION record_route_calculation_history() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+       AND OLD.formula_version = NEW.formula_version
+       AND OLD.cfn = NEW.cfn
+       AND OLD.m_coefficient = NEW.m_coefficient
+       AND OLD.bcc IS NOT DISTINCT FROM NEW.bcc
+       AND OLD.pcc IS NOT DISTINCT FROM NEW.pcc
+       AND OLD.rcc IS NOT DISTINCT FROM NEW.rcc
+       AND OLD.max_groups IS NOT DISTINCT FROM NEW.max_groups THEN
+        RETURN NEW;
+    END IF;
+
+    INSERT INTO route_calculation_history
+        (route_id, formula_version, cfn, m_coefficient, bcc, pcc, rcc, max_groups, calculated_at)
+    VALUES
+        (NEW.route_id, NEW.formula_version, NEW.cfn, NEW.m_coefficient, NEW.bcc, NEW.pcc, NEW.rcc,
+         NEW.max_groups, NEW.created_at);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_route_calculation_history
+AFTER INSERT OR UPDATE ON route_calculations
+FOR EACH ROW EXECUTE FUNCTION record_route_calculation_history();
+
+-- Существующие расчёты становятся первой записью истории
+INSERT INTO route_calculation_history
+    (route_id, formula_version, cfn, m_coefficient, bcc, pcc, rcc, max_groups, calculated_at)
+SELECT route_id, formula_version, cfn, m_coefficient, bcc, pcc, rcc, max_groups, created_at
+FROM route_calculations;
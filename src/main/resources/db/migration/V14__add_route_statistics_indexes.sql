@@ -0,0 +1,14 @@
+-- V14__add_route_statistics_indexes.sql
+
+-- Агрегаты по маршрутам пользователя с группировкой по типу и типу времени:
+-- index-only scan по (user_id, route_type, route_time_type) с id для соединения с расчётами
+CREATE INDEX idx_routes_user_type ON routes(user_id, route_type, route_time_type) INCLUDE (id);
+
+-- Покрывающий индекс расчётов: результаты читаются из индекса без обращения к таблице.
+-- Заменяет idx_calculations_route_id, который дублировал уникальный индекс route_id
+CREATE INDEX idx_calculations_route_results ON route_calculations(route_id)
+    INCLUDE (cfn, m_coefficient, bcc, pcc, rcc, max_groups);
+DROP INDEX IF EXISTS idx_calculations_route_id;
+
+-- Поиск по user_id покрывают idx_routes_user_created_id и idx_routes_user_type
+DROP INDEX IF EXISTS idx_routes_user_id;
@@ -0,0 +1,13 @@
+-- V15__allow_packed_segment_arrays.sql
+
+-- Массив участков хранится либо в JSONB, либо в bytea: NOT NULL заменяется проверкой "одна из двух колонок".
+-- Данные не меняются, пока упакованное хранение не включено явно
+ALTER TABLE routes
+    ALTER COLUMN td_array DROP NOT NULL,
+    ALTER COLUMN dt_array DROP NOT NULL,
+    ALTER COLUMN dg_array DROP NOT NULL,
+    ALTER COLUMN v_array DROP NOT NULL,
+    ADD CONSTRAINT chk_routes_td_storage CHECK (td_array IS NOT NULL OR td_packed IS NOT NULL),
+    ADD CONSTRAINT chk_routes_dt_storage CHECK (dt_array IS NOT NULL OR dt_packed IS NOT NULL),
+    ADD CONSTRAINT chk_routes_dg_storage CHECK (dg_array IS NOT NULL OR dg_packed IS NOT NULL),
+    ADD CONSTRAINT chk_routes_v_storage CHECK (v_array IS NOT NULL OR v_packed IS NOT NULL);
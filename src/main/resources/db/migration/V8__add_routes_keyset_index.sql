@@ -0,0 +1,4 @@
+-- V8__add_routes_keyset_index.sql
+
+-- Индекс под keyset-пагинацию списка маршрутов пользователя: ORDER BY created_at DESC, id DESC
+CREATE INDEX idx_routes_user_created_id ON routes(user_id, created_at DESC, id DESC);
@@ -0,0 +1,48 @@
+-- V9__add_route_segment_aggregates.sql
+
+-- Агрегаты массивов участков: список, пересчёт и аналитика читают их вместо JSONB.
+-- NULL-элементы массивов не учитываются, среднее округляется HALF_UP до 4 знаков
+ALTER TABLE routes
+    ADD COLUMN segment_count INTEGER,
+    ADD COLUMN td_sum NUMERIC,
+    ADD COLUMN td_mean NUMERIC,
+    ADD COLUMN td_min NUMERIC,
+    ADD COLUMN td_max NUMERIC,
+    ADD COLUMN dt_sum NUMERIC,
+    ADD COLUMN dt_mean NUMERIC,
+    ADD COLUMN dt_min NUMERIC,
+    ADD COLUMN dt_max NUMERIC,
+    ADD COLUMN dg_sum NUMERIC,
+    ADD COLUMN dg_mean NUMERIC,
+    ADD COLUMN dg_min NUMERIC,
+    ADD COLUMN dg_max NUMERIC,
+    ADD COLUMN v_sum NUMERIC,
+    ADD COLUMN v_mean NUMERIC,
+    ADD COLUMN v_min NUMERIC,
+    ADD COLUMN v_max NUMERIC;
+
+-- Заполнить существующие маршруты
+UPDATE routes r
+SET segment_count = td.cnt,
+    td_sum = td.total, td_mean = round(td.total / NULLIF(td.cnt, 0), 4), td_min = td.lo, td_max = td.hi,
+    dt_sum = dt.total, dt_mean = round(dt.total / NULLIF(dt.cnt, 0), 4), dt_min = dt.lo, dt_max = dt.hi,
+    dg_sum = dg.total, dg_mean = round(dg.total / NULLIF(dg.cnt, 0), 4), dg_min = dg.lo, dg_max = dg.hi,
+    v_sum = v.total, v_mean = round(v.total / NULLIF(v.cnt, 0), 4), v_min = v.lo, v_max = v.hi
+FROM routes src
+CROSS JOIN LATERAL (
+    SELECT count(e::numeric) AS cnt, sum(e::numeric) AS total, min(e::numeric) AS lo, max(e::numeric) AS hi
+    FROM jsonb_array_elements_text(src.td_array) e
+) td
+CROSS JOIN LATERAL (
+    SELECT count(e::numeric) AS cnt, sum(e::numeric) AS total, min(e::numeric) AS lo, max(e::numeric) AS hi
+    FROM jsonb_array_elements_text(src.dt_array) e
+) dt
+CROSS JOIN LATERAL (
+    SELECT count(e::numeric) AS cnt, sum(e::numeric) AS total, min(e::numeric) AS lo, max(e::numeric) AS hi
+    FROM jsonb_array_elements_text(src.dg_array) e
+) dg
+CROSS JOIN LATERAL (
+    SELECT count(e::numeric) AS cnt, sum(e::numeric) AS total, min(e::numeric) AS lo, max(e::numeric) AS hi
+    FROM jsonb_array_elements_text(src.v_array) e
+) v
+WHERE r.id = src.id;
@@ -0,0 +1,103 @@
+package com.recreation.calculator.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExpiringCacheTest {
+
+    private static final long LONG_TTL_MS = 60_000;
+    private static final long SHORT_TTL_MS = 50;
+
+    @Test
+    void returnsValueUntilExpiry() throws InterruptedException {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10);
+        cache.put("short", 1, System.currentTimeMillis() + SHORT_TTL_MS);
+        cache.put("long", 2, System.currentTimeMillis() + LONG_TTL_MS);
+
+        assertThat(cache.get("short")).isEqualTo(1);
+        assertThat(cache.get("long")).isEqualTo(2);
+
+        Thread.sleep(SHORT_TTL_MS * 2);
+
+        assertThat(cache.get("short")).isNull();
+        assertThat(cache.get("long")).isEqualTo(2);
+        // Просроченная запись удалена при чтении
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresAlreadyExpiredEntries() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10);
+        cache.put("expired", 1, System.currentTimeMillis() - 1);
+
+        assertThat(cache.get("expired")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidatesAndClears() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10);
+        cache.put("a", 1, System.currentTimeMillis() + LONG_TTL_MS);
+        cache.put("b", 2, System.currentTimeMillis() + LONG_TTL_MS);
+
+        cache.invalidate("a");
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isEqualTo(2);
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidatesMatchingValues() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10);
+        for (int i = 0; i < 6; i++) {
+            cache.put("k" + i, i, System.currentTimeMillis() + LONG_TTL_MS);
+        }
+
+        cache.invalidateIf(value -> value % 2 == 0);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("k0")).isNull();
+        assertThat(cache.get("k1")).isEqualTo(1);
+    }
+
+    @Test
+    void staysWithinMaxSize() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(10);
+        long expiresAt = System.currentTimeMillis() + LONG_TTL_MS;
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, i, expiresAt);
+            assertThat(cache.size()).isLessThanOrEqualTo(10);
+        }
+
+        // Только что добавленная запись не вытесняется
+        assertThat(cache.get(999)).isEqualTo(999);
+    }
+
+    @Test
+    void evictsExpiredEntriesBeforeLiveOnes() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i, System.currentTimeMillis() + SHORT_TTL_MS);
+        }
+        for (int i = 5; i < 10; i++) {
+            cache.put(i, i, System.currentTimeMillis() + LONG_TTL_MS);
+        }
+
+        Thread.sleep(SHORT_TTL_MS * 2);
+        cache.put(10, 10, System.currentTimeMillis() + LONG_TTL_MS);
+
+        assertThat(cache.size()).isEqualTo(6);
+        for (int i = 5; i <= 10; i++) {
+            assertThat(cache.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveMaxSize() {
+        assertThatThrownBy(() -> new ExpiringCache<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,123 @@
+package com.recreation.calculator.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentArrayCodecTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void roundTripsWithNullsAndCommonScale() {
+        List<BigDecimal> values = Arrays.asList(new BigDecimal("1.5"), null, new BigDecimal("2"),
+                new BigDecimal("-0.25"), new BigDecimal("1E+2"));
+
+        List<BigDecimal> decoded = SegmentArrayCodec.decode(SegmentArrayCodec.encode(values));
+
+        assertThat(decoded).containsExactly(new BigDecimal("1.50"), null, new BigDecimal("2.00"),
+                new BigDecimal("-0.25"), new BigDecimal("100.00"));
+    }
+
+    @Test
+    void roundTripsRandomArrays() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 2_000; i++) {
+            int scale = random.nextInt(5);
+            List<BigDecimal> values = new ArrayList<>();
+            int size = random.nextInt(50);
+            for (int j = 0; j < size; j++) {
+                values.add(random.nextInt(10) == 0 ? null : BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), scale));
+            }
+
+            assertThat(SegmentArrayCodec.decode(SegmentArrayCodec.encode(values))).isEqualTo(values);
+        }
+    }
+
+    @Test
+    void usesFourByteValuesWhenTheyFitInInt() {
+        byte[] encoded = SegmentArrayCodec.encode(List.of(new BigDecimal("21474836.47"), new BigDecimal("-21474836.47")));
+
+        assertThat(encoded).hasSize(SegmentArrayCodec.HEADER_SIZE + 2 * Integer.BYTES);
+        assertThat(encoded[2]).isEqualTo((byte) Integer.BYTES);
+        assertThat(encoded[3]).isEqualTo((byte) 2);
+    }
+
+    @Test
+    void switchesToEightByteValuesBeyondInt() {
+        List<BigDecimal> values = List.of(new BigDecimal("21474836.48"), BigDecimal.ONE);
+        byte[] encoded = SegmentArrayCodec.encode(values);
+
+        assertThat(encoded).hasSize(SegmentArrayCodec.HEADER_SIZE + 2 * Long.BYTES);
+        assertThat(encoded[2]).isEqualTo((byte) Long.BYTES);
+        assertThat(SegmentArrayCodec.decode(encoded))
+                .containsExactly(new BigDecimal("21474836.48"), new BigDecimal("1.00"));
+    }
+
+    @Test
+    void keepsIntMinValueDistinctFromNull() {
+        // Integer.MIN_VALUE — маркер NULL в 4-байтовом формате, поэтому значение пишется 8 байтами
+        List<BigDecimal> values = Arrays.asList(BigDecimal.valueOf(Integer.MIN_VALUE), null);
+        byte[] encoded = SegmentArrayCodec.encode(values);
+
+        assertThat(encoded[2]).isEqualTo((byte) Long.BYTES);
+        assertThat(SegmentArrayCodec.decode(encoded)).isEqualTo(values);
+    }
+
+    @Test
+    void capsScaleAtEighteen() {
+        List<BigDecimal> maxScale = List.of(new BigDecimal("0.000000000000000001"));
+        List<BigDecimal> tooPrecise = List.of(new BigDecimal("0.0000000000000000001"));
+
+        assertThat(SegmentArrayCodec.decode(SegmentArrayCodec.encode(maxScale))).isEqualTo(maxScale);
+        assertThat(SegmentArrayCodec.encode(tooPrecise)).isNull();
+        assertThat(SegmentArrayCodec.canEncode(tooPrecise)).isFalse();
+    }
+
+    @Test
+    void refusesValuesOutsideLong() {
+        assertThat(SegmentArrayCodec.encode(List.of(new BigDecimal("92233720368547758.08"), new BigDecimal("0.01"))))
+                .isNull();
+        // Long.MIN_VALUE — маркер NULL в 8-байтовом формате
+        assertThat(SegmentArrayCodec.encode(List.of(BigDecimal.valueOf(Long.MIN_VALUE)))).isNull();
+    }
+
+    @Test
+    void encodesNullAndEmptyArrays() {
+        assertThat(SegmentArrayCodec.encode(null)).isNull();
+        assertThat(SegmentArrayCodec.canEncode(null)).isFalse();
+
+        byte[] empty = SegmentArrayCodec.encode(List.of());
+        assertThat(empty).hasSize(SegmentArrayCodec.HEADER_SIZE);
+        assertThat(SegmentArrayCodec.decode(empty)).isEmpty();
+    }
+
+    @Test
+    void rejectsForeignOrTruncatedBytes() {
+        byte[] encoded = SegmentArrayCodec.encode(List.of(BigDecimal.ONE, BigDecimal.TEN));
+
+        assertThatThrownBy(() -> SegmentArrayCodec.decode(new byte[]{'[', ']'}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SegmentArrayCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        byte[] wrongWidth = encoded.clone();
+        wrongWidth[2] = 3;
+        assertThatThrownBy(() -> SegmentArrayCodec.decode(wrongWidth))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void decodesToUnmodifiableList() {
+        List<BigDecimal> decoded = SegmentArrayCodec.decode(SegmentArrayCodec.encode(List.of(BigDecimal.ONE)));
+
+        assertThatThrownBy(() -> decoded.add(BigDecimal.TEN)).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
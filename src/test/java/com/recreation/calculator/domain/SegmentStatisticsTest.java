@@ -0,0 +1,143 @@
+package com.recreation.calculator.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SegmentStatistics.of должен давать те же значения (включая scale), что и заполнение агрегатов в V9.
+ */
+class SegmentStatisticsTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void matchesBackfillForRandomArrays() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 2_000; i++) {
+            List<BigDecimal> td = randomArray(random);
+            List<BigDecimal> dt = randomArray(random);
+            List<BigDecimal> dg = randomArray(random);
+            List<BigDecimal> v = randomArray(random);
+
+            assertMatchesBackfill(td, dt, dg, v);
+        }
+    }
+
+    @Test
+    void takesLastOfEqualValuesLikePostgres() {
+        List<BigDecimal> values = decimals("2.5", "1.0", "1.00", "2.50");
+
+        SegmentStatistics stats = SegmentStatistics.of(values, values, values, values);
+
+        assertThat(stats.getTdMin()).isEqualTo(new BigDecimal("1.00"));
+        assertThat(stats.getTdMax()).isEqualTo(new BigDecimal("2.50"));
+        assertMatchesBackfill(values, values, values, values);
+    }
+
+    @Test
+    void ignoresNullElements() {
+        List<BigDecimal> values = Arrays.asList(null, new BigDecimal("3.00"), null, new BigDecimal("1.5"));
+
+        SegmentStatistics stats = SegmentStatistics.of(values, null, List.of(), Arrays.asList(null, null));
+
+        assertThat(stats.getSegmentCount()).isEqualTo(2);
+        assertThat(stats.getTdSum()).isEqualTo(new BigDecimal("4.50"));
+        assertThat(stats.getTdMean()).isEqualTo(new BigDecimal("2.2500"));
+        assertThat(stats.getDtSum()).isNull();
+        assertThat(stats.getDgMean()).isNull();
+        assertThat(stats.getVMin()).isNull();
+        assertMatchesBackfill(values, null, List.of(), Arrays.asList(null, null));
+    }
+
+    @Test
+    void roundsMeanHalfUpToFourDecimals() {
+        SegmentStatistics stats = SegmentStatistics.of(decimals("0.00005"), decimals("-0.00005"),
+                decimals("1", "2", "2"), decimals("0.00004"));
+
+        assertThat(stats.getTdMean()).isEqualTo(new BigDecimal("0.0001"));
+        assertThat(stats.getDtMean()).isEqualTo(new BigDecimal("-0.0001"));
+        assertThat(stats.getDgMean()).isEqualTo(new BigDecimal("1.6667"));
+        assertThat(stats.getVMean()).isEqualTo(new BigDecimal("0.0000"));
+    }
+
+    private static void assertMatchesBackfill(List<BigDecimal> td, List<BigDecimal> dt,
+                                              List<BigDecimal> dg, List<BigDecimal> v) {
+        SegmentStatistics actual = SegmentStatistics.of(td, dt, dg, v);
+        Backfill tdExpected = Backfill.of(td);
+        Backfill dtExpected = Backfill.of(dt);
+        Backfill dgExpected = Backfill.of(dg);
+        Backfill vExpected = Backfill.of(v);
+
+        assertThat(actual.getSegmentCount()).isEqualTo(tdExpected.count());
+        assertThat(Backfill.of(actual.getTdSum(), actual.getTdMean(), actual.getTdMin(), actual.getTdMax()))
+                .as("td=%s", td).isEqualTo(tdExpected.withoutCount());
+        assertThat(Backfill.of(actual.getDtSum(), actual.getDtMean(), actual.getDtMin(), actual.getDtMax()))
+                .as("dt=%s", dt).isEqualTo(dtExpected.withoutCount());
+        assertThat(Backfill.of(actual.getDgSum(), actual.getDgMean(), actual.getDgMin(), actual.getDgMax()))
+                .as("dg=%s", dg).isEqualTo(dgExpected.withoutCount());
+        assertThat(Backfill.of(actual.getVSum(), actual.getVMean(), actual.getVMin(), actual.getVMax()))
+                .as("v=%s", v).isEqualTo(vExpected.withoutCount());
+    }
+
+    private static List<BigDecimal> randomArray(Random random) {
+        if (random.nextInt(20) == 0) {
+            return null;
+        }
+        int size = random.nextInt(30);
+        List<BigDecimal> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(random.nextInt(10) == 0 ? null : BigDecimal.valueOf(random.nextInt(2_000) - 100, random.nextInt(4)));
+        }
+        return values;
+    }
+
+    private static List<BigDecimal> decimals(String... values) {
+        return Arrays.stream(values).map(BigDecimal::new).toList();
+    }
+
+    /**
+     * Семантика UPDATE из V9: count/sum/min/max по numeric без NULL, mean = round(sum / count, 4).
+     * min и max numeric в Postgres при равенстве возвращают новое значение; деление numeric
+     * считается с запасом точности и затем округляется до 4 знаков (от нуля на половине).
+     */
+    private record Backfill(Integer count, BigDecimal sum, BigDecimal mean, BigDecimal min, BigDecimal max) {
+
+        static Backfill of(List<BigDecimal> values) {
+            int count = 0;
+            BigDecimal sum = null;
+            BigDecimal min = null;
+            BigDecimal max = null;
+            if (values != null) {
+                for (BigDecimal value : values) {
+                    if (value == null) {
+                        continue;
+                    }
+                    count++;
+                    sum = sum == null ? value : sum.add(value);
+                    min = min == null || value.compareTo(min) <= 0 ? value : min;
+                    max = max == null || value.compareTo(max) >= 0 ? value : max;
+                }
+            }
+            BigDecimal mean = count == 0 ? null : sum
+                    .divide(BigDecimal.valueOf(count), 20, RoundingMode.HALF_UP)
+                    .setScale(4, RoundingMode.HALF_UP);
+            return new Backfill(count, sum, mean, min, max);
+        }
+
+        static Backfill of(BigDecimal sum, BigDecimal mean, BigDecimal min, BigDecimal max) {
+            return new Backfill(null, sum, mean, min, max);
+        }
+
+        Backfill withoutCount() {
+            return new Backfill(null, sum, mean, min, max);
+        }
+    }
+}
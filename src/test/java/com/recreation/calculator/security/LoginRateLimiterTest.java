@@ -0,0 +1,167 @@
+package com.recreation.calculator.security;
+
+import com.recreation.calculator.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginRateLimiterTest {
+
+    private static final String IP = "203.0.113.7";
+    private static final String OTHER_IP = "198.51.100.1";
+    private static final int UNLIMITED = 1_000_000;
+
+    @Test
+    void refillsTokensOverTime() throws InterruptedException {
+        // 2 попытки подряд, затем одна каждые 100 мс
+        LoginRateLimiter limiter = limiter(2, 600, UNLIMITED, UNLIMITED, 3, 1000, 900_000);
+
+        limiter.checkLogin("user@example.com", IP);
+        limiter.checkLogin("user@example.com", IP);
+        assertThatThrownBy(() -> limiter.checkLogin("user@example.com", IP))
+                .isInstanceOfSatisfying(TooManyRequestsException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(1));
+
+        Thread.sleep(150);
+
+        assertThatCode(() -> limiter.checkLogin("user@example.com", IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void normalizesEmailKey() {
+        LoginRateLimiter limiter = limiter(1, 1, UNLIMITED, UNLIMITED, 3, 1000, 900_000);
+
+        limiter.checkLogin(" User@Example.COM", IP);
+
+        assertThatThrownBy(() -> limiter.checkLogin("user@example.com", IP))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void limitsIpAcrossEmails() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, 2, 1, 3, 1000, 900_000);
+
+        limiter.checkLogin("a@example.com", IP);
+        limiter.checkLogin("b@example.com", IP);
+
+        assertThatThrownBy(() -> limiter.checkLogin("c@example.com", IP))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThatCode(() -> limiter.checkLogin("c@example.com", OTHER_IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void backsOffEmailAndIpAfterThresholdFailures() throws InterruptedException {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, 2, 100, 900_000);
+
+        limiter.recordFailure("user@example.com", IP);
+        assertThatCode(() -> limiter.checkLogin("user@example.com", IP)).doesNotThrowAnyException();
+
+        limiter.recordFailure("user@example.com", IP);
+        assertThatThrownBy(() -> limiter.checkLogin("user@example.com", IP))
+                .isInstanceOf(TooManyRequestsException.class);
+
+        Thread.sleep(150);
+
+        assertThatCode(() -> limiter.checkLogin("user@example.com", IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void doublesBackoffUpToMaximum() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, 1, 1000, 4000);
+
+        for (long expected : new long[]{1, 2, 4, 4}) {
+            limiter.recordFailure("user@example.com", IP);
+            assertThatThrownBy(() -> limiter.checkLogin("user@example.com", IP))
+                    .isInstanceOfSatisfying(TooManyRequestsException.class,
+                            e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(expected));
+        }
+    }
+
+    @Test
+    void failuresDoNotBlockIp() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, 1, 60_000, 900_000);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.recordFailure("victim" + i + "@example.com", IP);
+        }
+
+        assertThatCode(() -> limiter.checkLogin("other@example.com", IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void failuresFromOtherIpDoNotBlockOwner() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, 1, 60_000, 900_000);
+
+        limiter.recordFailure("user@example.com", OTHER_IP);
+
+        assertThatThrownBy(() -> limiter.checkLogin("user@example.com", OTHER_IP))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThatCode(() -> limiter.checkLogin("user@example.com", IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void trimsBucketsAboveCapacityOnlyInCleanup() {
+        LoginRateLimiter limiter = new LoginRateLimiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED,
+                3, 1000, 900_000, 10, 900_000);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.checkLogin("user" + i + "@example.com", IP);
+        }
+        // Вход не перебирает карту: 20 бакетов email и один IP
+        assertThat(buckets(limiter)).hasSize(21);
+
+        limiter.evictIdle();
+
+        assertThat(buckets(limiter)).hasSize(9);
+    }
+
+    @Test
+    void successResetsEmailFailures() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, 2, 60_000, 900_000);
+
+        limiter.recordFailure("user@example.com", IP);
+        limiter.recordSuccess("user@example.com", IP);
+        limiter.recordFailure("user@example.com", IP);
+
+        assertThatCode(() -> limiter.checkLogin("user@example.com", IP)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void successDoesNotRefillIpBucket() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, 3, 1, 3, 1000, 900_000);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.checkLogin("attacker@example.com", IP);
+            limiter.recordSuccess("attacker@example.com", IP);
+        }
+
+        assertThatThrownBy(() -> limiter.checkLogin("victim@example.com", IP))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void countsRegistrationSeparatelyFromLogin() {
+        LoginRateLimiter limiter = limiter(UNLIMITED, UNLIMITED, 1, 1, 3, 1000, 900_000);
+
+        limiter.checkLogin("user@example.com", IP);
+        limiter.checkRegister(IP);
+
+        assertThatThrownBy(() -> limiter.checkRegister(IP)).isInstanceOf(TooManyRequestsException.class);
+    }
+
+    private static Map<?, ?> buckets(LoginRateLimiter limiter) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(limiter, "buckets");
+    }
+
+    private static LoginRateLimiter limiter(int emailCapacity, int emailRefillPerMinute,
+                                            int ipCapacity, int ipRefillPerMinute,
+                                            int failureThreshold, long backoffBaseMs, long backoffMaxMs) {
+        return new LoginRateLimiter(emailCapacity, emailRefillPerMinute, ipCapacity, ipRefillPerMinute,
+                failureThreshold, backoffBaseMs, backoffMaxMs, 100_000, 900_000);
+    }
+}
@@ -0,0 +1,145 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.repository.CalculationInputRepository;
+import com.recreation.calculator.repository.CalculationOutboxRepository;
+import com.recreation.calculator.repository.CalculationOutboxRepository.OutboxEntry;
+import com.recreation.calculator.repository.RouteBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ошибка в пачке outbox: строки пересчитываются по одной, попытка засчитывается только проблемной.
+ */
+class CalculationPipelineTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BAD_ROUTE_ID = 102L;
+
+    private final CalculationOutboxRepository outboxRepository = mock(CalculationOutboxRepository.class);
+    private final CalculationInputRepository calculationInputRepository = mock(CalculationInputRepository.class);
+    private final RouteBatchRepository routeBatchRepository = mock(RouteBatchRepository.class);
+    private final RouteCalculationService calculationService = mock(RouteCalculationService.class);
+    private final RouteDetailCache routeDetailCache = mock(RouteDetailCache.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final CalculationPipeline pipeline = new CalculationPipeline(outboxRepository, calculationInputRepository,
+            routeBatchRepository, calculationService, routeDetailCache, transactionTemplate,
+            "async", false, 1, 10, 1000, MAX_ATTEMPTS, 1000);
+
+    private final List<OutboxEntry> outbox = new ArrayList<>();
+    private final List<String> statuses = new ArrayList<>();
+    // Статусы маршрутов, записанные в закоммиченных транзакциях
+    private final List<String> committed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(outboxRepository.claim(anyInt())).thenAnswer(invocation -> List.copyOf(outbox));
+        when(outboxRepository.claimById(anyLong())).thenAnswer(invocation -> outbox.stream()
+                .filter(entry -> entry.id() == invocation.<Long>getArgument(0))
+                .findFirst());
+        when(calculationInputRepository.findByIds(anyList())).thenAnswer(invocation ->
+                invocation.<List<Long>>getArgument(0).stream().map(id -> Route.builder().id(id).build()).toList());
+        when(calculationService.calculate(any())).thenAnswer(invocation -> {
+            if (invocation.<Route>getArgument(0).getId() == BAD_ROUTE_ID) {
+                throw new IllegalStateException("bad factors");
+            }
+            return new RouteCalculation();
+        });
+
+        doAnswer(invocation -> {
+            for (Long routeId : invocation.<List<Long>>getArgument(0)) {
+                statuses.add(routeId + ":" + invocation.getArgument(1));
+            }
+            return null;
+        }).when(outboxRepository).markStatus(anyList(), anyString());
+
+        // Статусы попадают в committed, только если callback завершился без исключения
+        doAnswer(invocation -> {
+            statuses.clear();
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            committed.addAll(statuses);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void processesBatchInOneTransaction() {
+        outbox.addAll(List.of(new OutboxEntry(1, 101, 0), new OutboxEntry(3, 103, 0)));
+
+        assertThat(pipeline.drainBatch()).isEqualTo(2);
+
+        assertThat(committed).containsExactly("101:done", "103:done");
+        verify(outboxRepository).delete(List.of(1L, 3L));
+        verify(routeDetailCache).evict(101L);
+        verify(routeDetailCache).evict(103L);
+    }
+
+    @Test
+    void retriesFailedBatchOneByOne() {
+        outbox.addAll(List.of(new OutboxEntry(1, 101, 0), new OutboxEntry(2, BAD_ROUTE_ID, 0),
+                new OutboxEntry(3, 103, 0)));
+
+        assertThat(pipeline.drainBatch()).isEqualTo(3);
+
+        assertThat(committed).containsExactly("101:done", "103:done");
+        verify(outboxRepository).recordFailure(eq(2L), contains("bad factors"));
+        verify(outboxRepository, never()).delete(List.of(2L));
+        verify(routeDetailCache).evict(BAD_ROUTE_ID);
+    }
+
+    @Test
+    void failsRouteAfterMaxAttempts() {
+        outbox.addAll(List.of(new OutboxEntry(1, 101, 0), new OutboxEntry(2, BAD_ROUTE_ID, MAX_ATTEMPTS - 1)));
+
+        pipeline.drainBatch();
+
+        assertThat(committed).containsExactly("101:done", BAD_ROUTE_ID + ":" + Route.CALCULATION_FAILED);
+        verify(outboxRepository).recordFailure(eq(2L), contains("bad factors"));
+        verify(outboxRepository).delete(List.of(2L));
+    }
+
+    @Test
+    void skipsEntryClaimedByAnotherWorker() {
+        outbox.addAll(List.of(new OutboxEntry(1, 101, 0), new OutboxEntry(2, BAD_ROUTE_ID, 0)));
+        // К повторной попытке строку уже забрал и обработал другой воркер
+        when(outboxRepository.claimById(2L)).thenReturn(Optional.empty());
+
+        pipeline.drainBatch();
+
+        assertThat(committed).containsExactly("101:done");
+        verify(outboxRepository, never()).recordFailure(anyLong(), anyString());
+    }
+
+    @Test
+    void propagatesFailureBeforeAnythingIsClaimed() {
+        when(outboxRepository.claim(anyInt())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThatThrownBy(pipeline::drainBatch).isInstanceOf(QueryTimeoutException.class);
+        verify(outboxRepository, never()).claimById(anyLong());
+    }
+}
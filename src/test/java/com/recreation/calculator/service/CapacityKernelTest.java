@@ -0,0 +1,170 @@
+package com.recreation.calculator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Каждая операция ядра сверяется с формулой прежнего BigDecimal-кода на случайных значениях
+ * с фиксированным seed и на граничных случаях округления.
+ */
+class CapacityKernelTest {
+
+    private static final long SEED = 42L;
+    private static final int SAMPLES = 20_000;
+
+    @Test
+    void averageHundredthsMatchesBigDecimal() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SAMPLES; i++) {
+            long sum = random.nextInt(10_000_000);
+            int scale = random.nextInt(7);
+            long count = 1 + random.nextInt(100);
+
+            long expected = BigDecimal.valueOf(sum, scale)
+                    .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+
+            assertThat(CapacityKernel.averageHundredths(sum, scale, count))
+                    .as("sum=%d scale=%d count=%d", sum, scale, count)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void averageRoundsHalfUpAtThirdDecimal() {
+        // (1.00 + 1.01) / 2 = 1.005
+        assertThat(CapacityKernel.averageHundredths(201, 2, 2)).isEqualTo(101);
+        // 1.00449 / 1
+        assertThat(CapacityKernel.averageHundredths(100_449, 5, 1)).isEqualTo(100);
+        // 1.0050 / 1
+        assertThat(CapacityKernel.averageHundredths(10_050, 4, 1)).isEqualTo(101);
+        // 0.015 / 1
+        assertThat(CapacityKernel.averageHundredths(15, 3, 1)).isEqualTo(2);
+    }
+
+    @Test
+    void clampedCoefficientMatchesBigDecimal() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SAMPLES; i++) {
+            int scale = random.nextInt(5);
+            long bound = 2 * (long) Math.pow(10, scale);
+            long delta = random.nextLong(-bound, bound / 2 + 1);
+
+            assertThat(BigDecimal.valueOf(CapacityKernel.clampedCoefficientHundredths(delta, scale), 2))
+                    .as("delta=%d scale=%d", delta, scale)
+                    .isEqualTo(baselineCoefficient(BigDecimal.valueOf(delta, scale)));
+        }
+    }
+
+    @Test
+    void clampedCoefficientRoundsAndClamps() {
+        // 1.0 - 0.125 = 0.875
+        assertThat(CapacityKernel.clampedCoefficientHundredths(-125, 3)).isEqualTo(88);
+        // 1.0 - 0.1251 = 0.8749
+        assertThat(CapacityKernel.clampedCoefficientHundredths(-1251, 4)).isEqualTo(87);
+        // 1.0 - 0.905 = 0.095 -> 0.1
+        assertThat(CapacityKernel.clampedCoefficientHundredths(-905, 3)).isEqualTo(10);
+        // 1.0 + 2 -> 1.0
+        assertThat(CapacityKernel.clampedCoefficientHundredths(2, 0)).isEqualTo(100);
+        // 1.0 - 3 -> 0.1
+        assertThat(CapacityKernel.clampedCoefficientHundredths(-3, 0)).isEqualTo(10);
+    }
+
+    @Test
+    void maxGroupsMatchesBigDecimal() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SAMPLES; i++) {
+            long tSut = 1 + random.nextInt(9_999);
+            long avgTd = 1 + random.nextInt(100_000);
+
+            int expected = BigDecimal.valueOf(tSut, 1)
+                    .divide(BigDecimal.valueOf(avgTd, 2), 2, RoundingMode.DOWN)
+                    .intValue();
+
+            assertThat(CapacityKernel.maxGroups(tSut, 1, avgTd))
+                    .as("tSut=%d avgTd=%d", tSut, avgTd)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void pccAndRccMatchBigDecimal() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SAMPLES; i++) {
+            int bcc = random.nextInt(100_000);
+            long cfn = 10 + random.nextInt(91);
+            long m = 10 + random.nextInt(91);
+
+            int expectedPcc = BigDecimal.valueOf(bcc)
+                    .multiply(BigDecimal.valueOf(cfn, 2))
+                    .setScale(0, RoundingMode.HALF_UP)
+                    .intValue();
+            int expectedRcc = BigDecimal.valueOf(expectedPcc)
+                    .multiply(BigDecimal.valueOf(m, 2))
+                    .setScale(0, RoundingMode.DOWN)
+                    .intValue();
+
+            int pcc = CapacityKernel.pcc(bcc, cfn);
+            assertThat(pcc).as("bcc=%d cfn=%d", bcc, cfn).isEqualTo(expectedPcc);
+            assertThat(CapacityKernel.rcc(pcc, m)).as("pcc=%d m=%d", pcc, m).isEqualTo(expectedRcc);
+        }
+    }
+
+    @Test
+    void pccRoundsHalfUp() {
+        // 5 * 0.15 = 0.75, 3 * 0.5 = 1.5, 1 * 0.49 = 0.49
+        assertThat(CapacityKernel.pcc(5, 15)).isEqualTo(1);
+        assertThat(CapacityKernel.pcc(3, 50)).isEqualTo(2);
+        assertThat(CapacityKernel.pcc(1, 49)).isEqualTo(0);
+    }
+
+    @Test
+    void unlimitedBccTruncatesSeasonByTl() {
+        assertThat(CapacityKernel.unlimitedBcc(180, 7, 12)).isEqualTo(25 * 12);
+        assertThat(CapacityKernel.unlimitedBcc(6, 7, 12)).isZero();
+    }
+
+    @Test
+    void divideHalfUpRoundsAwayFromZero() {
+        assertThat(CapacityKernel.divideHalfUp(5, 2)).isEqualTo(3);
+        assertThat(CapacityKernel.divideHalfUp(-5, 2)).isEqualTo(-3);
+        assertThat(CapacityKernel.divideHalfUp(5, -2)).isEqualTo(-3);
+        assertThat(CapacityKernel.divideHalfUp(Long.MAX_VALUE, Long.MAX_VALUE - 1)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsScaleAboveMaxScale() {
+        assertThatThrownBy(() -> CapacityKernel.averageHundredths(1, CapacityKernel.MAX_SCALE + 3, 1))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> CapacityKernel.clampedCoefficientHundredths(1, CapacityKernel.MAX_SCALE + 1))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> CapacityKernel.maxGroups(1, CapacityKernel.MAX_SCALE + 1, 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void throwsOnLongOverflow() {
+        assertThatThrownBy(() -> CapacityKernel.averageHundredths(Long.MAX_VALUE, 0, 1))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> CapacityKernel.maxGroups(1, 1, Long.MAX_VALUE / 2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    // Прежний расчёт CFN и M
+    private static BigDecimal baselineCoefficient(BigDecimal delta) {
+        BigDecimal value = new BigDecimal("1.0").add(delta);
+        if (value.compareTo(new BigDecimal("0.1")) < 0) {
+            value = new BigDecimal("0.1");
+        }
+        if (value.compareTo(new BigDecimal("1.0")) > 0) {
+            value = new BigDecimal("1.0");
+        }
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+}
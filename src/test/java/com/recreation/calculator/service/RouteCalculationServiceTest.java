@@ -0,0 +1,223 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.domain.SegmentStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Golden-тесты: результат RouteCalculationService совпадает с прежним BigDecimal-расчётом
+ * (включая scale BigDecimal), как с агрегатами SegmentStatistics, так и по массиву T_d.
+ */
+class RouteCalculationServiceTest {
+
+    private static final long SEED = 42L;
+
+    private final RouteCalculationService service = new RouteCalculationService(null);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void matchesBaselineForRandomFixedTimeRoutes() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 5_000; i++) {
+            List<BigDecimal> td = new ArrayList<>();
+            int segments = 1 + random.nextInt(50);
+            for (int j = 0; j < segments; j++) {
+                td.add(random.nextInt(20) == 0 ? null : BigDecimal.valueOf(1 + random.nextInt(50_000), random.nextInt(4)));
+            }
+            BigDecimal tSut = BigDecimal.valueOf(1 + random.nextInt(240), 1);
+            int gs = 1 + random.nextInt(30);
+
+            assertMatchesBaseline(fixedTimeRoute(tSut, gs, td, true));
+            assertMatchesBaseline(fixedTimeRoute(tSut, gs, td, false));
+        }
+    }
+
+    @Test
+    void averageTdRoundsHalfUpAtThirdDecimal() {
+        // (1.00 + 1.01) / 2 = 1.005 -> 1.01, 10.1 / 1.01 = 10
+        Route route = fixedTimeRoute(new BigDecimal("10.1"), 3, decimals("1.00", "1.01"), true);
+
+        RouteCalculation calculation = assertMatchesBaseline(route);
+        assertThat(calculation.getMaxGroups()).isEqualTo(10);
+        assertThat(calculation.getBcc()).isEqualTo(30);
+    }
+
+    @Test
+    void scaleAboveMaxScaleFallsBackToBigDecimal() {
+        List<BigDecimal> td = decimals("1.5000000000000000000001", "2.4999999999999999999999");
+
+        assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, true));
+        assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, false));
+    }
+
+    @Test
+    void longOverflowFallsBackToBigDecimal() {
+        List<BigDecimal> td = decimals("50000000000000000.00", "50000000000000000.01");
+
+        RouteCalculation calculation = assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, true));
+        assertThat(calculation.getMaxGroups()).isZero();
+        assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, false));
+    }
+
+    @Test
+    void nullAndEmptyTdLeaveMetricsEmpty() {
+        for (List<BigDecimal> td : Arrays.asList(null, List.<BigDecimal>of(), Arrays.<BigDecimal>asList(null, null))) {
+            RouteCalculation calculation = assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, true));
+            assertThat(calculation.getBcc()).isNull();
+            assertThat(calculation.getMaxGroups()).isNull();
+            assertMatchesBaseline(fixedTimeRoute(new BigDecimal("10.0"), 12, td, false));
+        }
+    }
+
+    @Test
+    void unlimitedTimeRouteComputesOnlyBcc() {
+        Route route = Route.builder()
+                .routeTimeType("unlimited_time")
+                .tSut(new BigDecimal("10.0"))
+                .tSezon(180)
+                .gs(12)
+                .tl(7)
+                .build();
+
+        RouteCalculation calculation = assertMatchesBaseline(route);
+        assertThat(calculation.getBcc()).isEqualTo(25 * 12);
+        assertThat(calculation.getPcc()).isNull();
+        assertThat(calculation.getRcc()).isNull();
+
+        route.setTl(0);
+        assertThat(assertMatchesBaseline(route).getBcc()).isNull();
+    }
+
+    @Test
+    void coefficientsMatchBaseline() throws Exception {
+        List<String> factors = List.of(
+                "[]",
+                "[{\"impact\": \"-0.125\", \"efficiency\": \"-0.125\"}]",
+                "[{\"impact\": -0.3, \"efficiency\": -0.3}, {\"impact\": -0.7, \"efficiency\": -0.7}]",
+                "[{\"impact\": \"0.5\", \"efficiency\": \"0.5\"}]",
+                "[{\"impact\": \"-0.12500000000000000000001\", \"efficiency\": \"-0.12500000000000000000001\"}]",
+                "[{\"impact\": \"-1E+1\", \"efficiency\": \"-1E+1\"}]",
+                "[{\"other\": 1}]");
+
+        for (String json : factors) {
+            JsonNode node = objectMapper.readTree(json);
+            assertThat(service.calculateCfn(node)).as(json).isEqualTo(Baseline.coefficient(node, "impact"));
+            assertThat(service.calculateMCoefficient(node)).as(json).isEqualTo(Baseline.coefficient(node, "efficiency"));
+        }
+
+        assertThat(service.calculateCfn(null)).isEqualTo(Baseline.coefficient(null, "impact"));
+        assertThat(service.calculateCfn(List.of(1, 2))).isEqualTo(Baseline.coefficient(List.of(1, 2), "impact"));
+    }
+
+    private RouteCalculation assertMatchesBaseline(Route route) {
+        RouteCalculation actual = service.calculate(route);
+        RouteCalculation expected = Baseline.calculate(route);
+
+        String description = "tSut=" + route.getTSut() + " td=" + route.getTdArray();
+        assertThat(actual.getCfn()).as(description).isEqualTo(expected.getCfn());
+        assertThat(actual.getMCoefficient()).as(description).isEqualTo(expected.getMCoefficient());
+        assertThat(actual.getMaxGroups()).as(description).isEqualTo(expected.getMaxGroups());
+        assertThat(actual.getBcc()).as(description).isEqualTo(expected.getBcc());
+        assertThat(actual.getPcc()).as(description).isEqualTo(expected.getPcc());
+        assertThat(actual.getRcc()).as(description).isEqualTo(expected.getRcc());
+        return actual;
+    }
+
+    private static Route fixedTimeRoute(BigDecimal tSut, int gs, List<BigDecimal> td, boolean withStatistics) {
+        return Route.builder()
+                .routeTimeType("fixed_time")
+                .tSut(tSut)
+                .tSezon(180)
+                .gs(gs)
+                .tl(2)
+                .tdArray(td)
+                .segmentStatistics(withStatistics ? SegmentStatistics.of(td, null, null, null) : null)
+                .build();
+    }
+
+    private static List<BigDecimal> decimals(String... values) {
+        return Arrays.stream(values).map(BigDecimal::new).toList();
+    }
+
+    /**
+     * Расчёт до перехода на CapacityKernel, без сохранения в БД.
+     */
+    private static final class Baseline {
+
+        static RouteCalculation calculate(Route route) {
+            RouteCalculation calc = new RouteCalculation();
+            BigDecimal cfn = coefficient(route.getEcologicalFactors(), "impact");
+            BigDecimal m = coefficient(route.getManagementFactors(), "efficiency");
+            calc.setCfn(cfn);
+            calc.setMCoefficient(m);
+
+            if (route.isFixedTimeRoute()) {
+                BigDecimal avgTd = averageTd(route.getTdArray());
+                if (avgTd.compareTo(BigDecimal.ZERO) <= 0) {
+                    return calc;
+                }
+                int maxGroups = route.getTSut().divide(avgTd, 2, RoundingMode.DOWN).intValue();
+                int bcc = maxGroups * route.getGs();
+                int pcc = BigDecimal.valueOf(bcc).multiply(cfn).setScale(0, RoundingMode.HALF_UP).intValue();
+                int rcc = BigDecimal.valueOf(pcc).multiply(m).setScale(0, RoundingMode.DOWN).intValue();
+                calc.setMaxGroups(maxGroups);
+                calc.setBcc(bcc);
+                calc.setPcc(pcc);
+                calc.setRcc(rcc);
+            } else if (route.isUnlimitedTimeRoute() && route.getTl() != null && route.getTl() != 0) {
+                calc.setBcc((route.getTSezon() / route.getTl()) * route.getGs());
+            }
+            return calc;
+        }
+
+        static BigDecimal coefficient(Object factors, String field) {
+            if (factors == null) {
+                return new BigDecimal("1.0");
+            }
+            try {
+                BigDecimal value = new BigDecimal("1.0");
+                if (factors instanceof JsonNode node) {
+                    for (JsonNode factor : node) {
+                        value = value.add(new BigDecimal(factor.get(field).asText()));
+                    }
+                }
+                if (value.compareTo(new BigDecimal("0.1")) < 0) {
+                    value = new BigDecimal("0.1");
+                }
+                if (value.compareTo(new BigDecimal("1.0")) > 0) {
+                    value = new BigDecimal("1.0");
+                }
+                return value.setScale(2, RoundingMode.HALF_UP);
+            } catch (Exception e) {
+                return new BigDecimal("1.0");
+            }
+        }
+
+        static BigDecimal averageTd(List<BigDecimal> td) {
+            if (td == null || td.isEmpty()) {
+                return BigDecimal.ZERO;
+            }
+            BigDecimal sum = BigDecimal.ZERO;
+            int count = 0;
+            for (BigDecimal item : td) {
+                if (item != null) {
+                    sum = sum.add(item);
+                    count++;
+                }
+            }
+            return count == 0 ? BigDecimal.ZERO : sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteCursorTest {
+
+    @Test
+    void roundTripsPosition() {
+        for (LocalDateTime createdAt : new LocalDateTime[]{
+                LocalDateTime.of(2024, 6, 1, 12, 0),
+                LocalDateTime.of(2024, 6, 1, 12, 0, 5),
+                LocalDateTime.of(2024, 6, 1, 12, 0, 5, 123_456_000)}) {
+            RouteCursor cursor = new RouteCursor(createdAt, Long.MAX_VALUE);
+
+            assertThat(RouteCursor.decode(cursor.encode())).isEqualTo(cursor);
+        }
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        String encoded = new RouteCursor(LocalDateTime.of(2024, 6, 1, 12, 0, 5, 1_000), 42L).encode();
+
+        assertThat(encoded).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        for (String cursor : new String[]{"not base64!", raw("no separator"), raw("2024-06-01T12:00|abc"),
+                raw("yesterday|1"), ""}) {
+            assertThatThrownBy(() -> RouteCursor.decode(cursor))
+                    .as(cursor)
+                    .isInstanceOf(BadRequestException.class);
+        }
+    }
+
+    private static String raw(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
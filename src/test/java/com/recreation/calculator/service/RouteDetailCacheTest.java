@@ -0,0 +1,164 @@
+package com.recreation.calculator.service;
+
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.dto.response.RouteDetailResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Порядок загрузки и инвалидации: ответ, загруженный до удаления маршрута, не возвращается в кэш.
+ */
+class RouteDetailCacheTest {
+
+    private static final Long ROUTE_ID = 1L;
+    private static final Long OWNER_ID = 10L;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final RouteDetailCache cache =
+            new RouteDetailCache(Jackson2ObjectMapperBuilder.json().build(), 1L << 20, 64L << 10);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void cachesLoadedResponseForOwner() {
+        CachedRouteDetail first = cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+        CachedRouteDetail second = cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+
+        // Чужой пользователь не получает закэшированный ответ
+        cache.getOrLoad(ROUTE_ID, OWNER_ID + 1, loader(Route.CALCULATION_DONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void doesNotCachePendingCalculation() {
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_PENDING));
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_PENDING));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void deleteCommittedDuringLoadIsNotOverwritten() throws Exception {
+        assertLoadDroppedWhen(() -> {
+            // deleteRoute: evict в транзакции и ещё раз после коммита
+            TransactionSynchronizationManager.initSynchronization();
+            cache.evictAfterCommit(ROUTE_ID);
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+            TransactionSynchronizationManager.clearSynchronization();
+        });
+    }
+
+    @Test
+    void remoteEvictDuringLoadIsNotOverwritten() throws Exception {
+        assertLoadDroppedWhen(() -> cache.onCacheInvalidation(
+                new CacheInvalidationEvent(CacheInvalidationEvent.Type.ROUTE, ROUTE_ID.toString())));
+    }
+
+    @Test
+    void clearDuringLoadIsNotOverwritten() throws Exception {
+        assertLoadDroppedWhen(() -> cache.onCacheInvalidation(
+                new CacheInvalidationEvent(CacheInvalidationEvent.Type.ROUTES, null)));
+    }
+
+    @Test
+    void loadInsideDeleteTransactionIsEvictedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evictAfterCommit(ROUTE_ID);
+
+        // Чтение до коммита ещё видит маршрут и кладёт его в кэш
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictOfOtherRouteDoesNotDropLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+
+        CompletableFuture<CachedRouteDetail> reader = CompletableFuture.supplyAsync(() ->
+                cache.getOrLoad(ROUTE_ID, OWNER_ID, blockingLoader(loading, evicted)));
+
+        assertThat(loading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        cache.evict(ROUTE_ID + 1);
+        evicted.countDown();
+        CachedRouteDetail loaded = reader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE))).isSameAs(loaded);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void reloadAfterEvictIsCachedAgain() {
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+        cache.evict(ROUTE_ID);
+
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    // Загрузка начинается до инвалидации и заканчивается после неё: ответ не должен остаться в кэше
+    private void assertLoadDroppedWhen(Runnable invalidation) throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        CompletableFuture<CachedRouteDetail> reader = CompletableFuture.supplyAsync(() ->
+                cache.getOrLoad(ROUTE_ID, OWNER_ID, blockingLoader(loading, invalidated)));
+
+        assertThat(loading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        invalidation.run();
+        invalidated.countDown();
+        reader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        cache.getOrLoad(ROUTE_ID, OWNER_ID, loader(Route.CALCULATION_DONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    private Supplier<RouteDetailResponse> blockingLoader(CountDownLatch loading, CountDownLatch proceed) {
+        return () -> {
+            RouteDetailResponse response = loader(Route.CALCULATION_DONE).get();
+            loading.countDown();
+            try {
+                assertThat(proceed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return response;
+        };
+    }
+
+    private Supplier<RouteDetailResponse> loader(String calculationStatus) {
+        return () -> RouteDetailResponse.builder()
+                .id(ROUTE_ID)
+                .routeName("Маршрут " + loads.incrementAndGet())
+                .calculationStatus(calculationStatus)
+                .build();
+    }
+}
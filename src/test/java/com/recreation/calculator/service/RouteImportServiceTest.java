@@ -0,0 +1,143 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.domain.Route;
+import com.recreation.calculator.domain.RouteCalculation;
+import com.recreation.calculator.dto.request.RouteCreateRequest;
+import com.recreation.calculator.dto.response.RouteImportError;
+import com.recreation.calculator.dto.response.RouteImportResponse;
+import com.recreation.calculator.repository.RouteBatchRepository;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ошибка в пачке импорта: строки сохраняются по одной, ошибка остаётся только у проблемной.
+ */
+class RouteImportServiceTest {
+
+    private static final Long USER_ID = 7L;
+    private static final String BAD_ROUTE = "bad";
+
+    private final RouteBatchRepository routeBatchRepository = mock(RouteBatchRepository.class);
+    private final RouteCalculationService calculationService = mock(RouteCalculationService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final CalculationPipeline calculationPipeline = mock(CalculationPipeline.class);
+
+    private final RouteImportService service = new RouteImportService(routeBatchRepository, calculationService,
+            mock(Validator.class), new ObjectMapper(), transactionTemplate, calculationPipeline);
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<String> inserted = new ArrayList<>();
+    // Маршруты, записанные в закоммиченных транзакциях
+    private final List<String> committed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "batchSize", 3);
+
+        when(routeBatchRepository.nextRouteIds(anyInt())).thenAnswer(invocation ->
+                LongStream.range(0, invocation.<Integer>getArgument(0)).map(i -> sequence.incrementAndGet())
+                        .boxed().toList());
+        when(calculationService.calculate(any())).thenAnswer(invocation -> new RouteCalculation());
+
+        doAnswer(invocation -> {
+            for (Route route : invocation.<List<Route>>getArgument(0)) {
+                inserted.add(route.getRouteName());
+            }
+            return null;
+        }).when(routeBatchRepository).insertRoutes(anyList());
+
+        // Вставки транзакции попадают в committed, только если callback завершился без исключения
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inserted.clear();
+            Object result = invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            committed.addAll(inserted);
+            return result;
+        });
+    }
+
+    @Test
+    void importsChunksInOneTransactionEach() {
+        RouteImportResponse response = service.importRoutes(requests("a", "b", "c", "d"), USER_ID);
+
+        assertThat(response.getReceived()).isEqualTo(4);
+        assertThat(response.getImported()).isEqualTo(4);
+        assertThat(response.getFailed()).isZero();
+        assertThat(response.getRouteIds()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(committed).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    void retriesFailedChunkOneByOne() {
+        failOnBadRoute(new DataIntegrityViolationException("value too long"));
+
+        RouteImportResponse response = service.importRoutes(requests("a", BAD_ROUTE, "c", "d"), USER_ID);
+
+        assertThat(response.getImported()).isEqualTo(3);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(committed).containsExactly("a", "c", "d");
+        assertThat(response.getErrors()).extracting(RouteImportError::getIndex).containsExactly(1);
+        assertThat(response.getErrors().get(0).getMessage()).contains("value too long");
+    }
+
+    @Test
+    void retriesChunkOnNonDatabaseFailure() {
+        failOnBadRoute(new IllegalStateException("bad factors"));
+
+        RouteImportResponse response = service.importRoutes(requests("a", "b", "c", BAD_ROUTE, "e"), USER_ID);
+
+        assertThat(response.getReceived()).isEqualTo(5);
+        assertThat(response.getImported()).isEqualTo(4);
+        assertThat(committed).containsExactly("a", "b", "c", "e");
+        assertThat(response.getErrors()).extracting(RouteImportError::getIndex).containsExactly(3);
+        assertThat(response.getErrors().get(0).getMessage()).contains("bad factors");
+    }
+
+    private void failOnBadRoute(RuntimeException failure) {
+        when(calculationService.calculate(any())).thenAnswer(invocation -> {
+            if (BAD_ROUTE.equals(invocation.<Route>getArgument(0).getRouteName())) {
+                throw failure;
+            }
+            return new RouteCalculation();
+        });
+    }
+
+    private static List<RouteCreateRequest> requests(String... names) {
+        List<RouteCreateRequest> requests = new ArrayList<>();
+        for (String name : names) {
+            requests.add(RouteCreateRequest.builder()
+                    .routeName(name)
+                    .routeType("однодневный")
+                    .routeTimeType("fixed_time")
+                    .tSut(new BigDecimal("10.0"))
+                    .tSezon(180)
+                    .gs(12)
+                    .tl(1)
+                    .tdArray(List.of(new BigDecimal("1.50")))
+                    .dtArray(List.of(new BigDecimal("2.00")))
+                    .dgArray(List.of(new BigDecimal("0.50")))
+                    .vArray(List.of(new BigDecimal("3.00")))
+                    .build());
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,61 @@
+package com.recreation.calculator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recreation.calculator.dto.request.DecimalRangeRequest;
+import com.recreation.calculator.dto.request.IntegerRangeRequest;
+import com.recreation.calculator.dto.request.RouteSweepRequest;
+import com.recreation.calculator.dto.response.RouteSweepPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * max_groups сетки считается в plan(): tSut с большим scale не обрывает поток ответа.
+ */
+class RouteSweepServiceTest {
+
+    private final RouteCalculationService calculationService = new RouteCalculationService(null);
+    private final RouteSweepService service =
+            new RouteSweepService(calculationService, new ObjectMapper(), 1_000, 16, 1);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void evaluatesFixedTimeGridWithKernel() {
+        RouteSweepService.Plan plan = service.plan(fixedTimeRequest(
+                new BigDecimal("10.0"), new BigDecimal("12.0"), new BigDecimal("1.0"), "1.50", "2.50"));
+
+        assertThat(plan.size()).isEqualTo(3);
+        assertThat(plan.evaluate(0).getMaxGroups()).isEqualTo(5);
+        assertThat(plan.evaluate(2).getMaxGroups()).isEqualTo(6);
+        assertThat(plan.evaluate(2).getBcc()).isEqualTo(72);
+    }
+
+    @Test
+    void scaleAboveMaxScaleFallsBackToBigDecimal() {
+        BigDecimal tSut = new BigDecimal("10.0000000000000000000001");
+        RouteSweepService.Plan plan = service.plan(fixedTimeRequest(tSut, tSut, null, "1.50", "2.50"));
+
+        RouteSweepPoint point = plan.evaluate(0);
+
+        assertThat(point.getTSut()).isEqualTo(tSut);
+        assertThat(point.getMaxGroups()).isEqualTo(5);
+        assertThat(point.getBcc()).isEqualTo(60);
+    }
+
+    private static RouteSweepRequest fixedTimeRequest(BigDecimal from, BigDecimal to, BigDecimal step, String... td) {
+        RouteSweepRequest request = new RouteSweepRequest();
+        request.setRouteTimeType("fixed_time");
+        request.setGs(new IntegerRangeRequest(12, null, null));
+        request.setTSut(new DecimalRangeRequest(from, to, step));
+        request.setTdArray(Arrays.stream(td).map(BigDecimal::new).toList());
+        return request;
+    }
+}